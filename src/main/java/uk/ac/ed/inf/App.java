@@ -11,9 +11,17 @@ import uk.ac.ed.inf.ilp.interfaces.OrderValidation;
 import uk.ac.ed.inf.lib.OrderValidator;
 import uk.ac.ed.inf.lib.api.APIClient;
 import uk.ac.ed.inf.lib.api.IAPIClient;
+import uk.ac.ed.inf.lib.pathFinder.CachingPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.DistanceFieldPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.Heuristic;
+import uk.ac.ed.inf.lib.pathFinder.HierarchicalPathFinder;
 import uk.ac.ed.inf.lib.pathFinder.INode;
 import uk.ac.ed.inf.lib.pathFinder.IPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.JumpPointPathFinder;
 import uk.ac.ed.inf.lib.pathFinder.PathFinder;
+import uk.ac.ed.inf.lib.pathFinder.SearchStats;
+import uk.ac.ed.inf.lib.pathFinder.VisibilityGraphPathFinder;
+import uk.ac.ed.inf.lib.routeStore.RouteStore;
 import uk.ac.ed.inf.lib.systemFileWriter.ISystemFileWriter;
 import uk.ac.ed.inf.lib.systemFileWriter.SystemFileWriter;
 
@@ -22,7 +30,10 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * Entry point for PizzaDronz, a drone delivery system by the School of Informatics at the University of Edinburgh.
@@ -33,6 +44,8 @@ public class App
 {
     final private static String DATE_FMT = "yyyy-MM-dd";
     final private static LngLat AT_POSITION = new LngLat(-3.186874, 55.944494);
+    final private static String PATH_FINDER_PROPERTY = "pathFinder";
+    final private static String PARALLELISM_PROPERTY = "parallelism";
 
     public static void main(String[] args)
     {
@@ -41,6 +54,8 @@ public class App
 
         String dateArg = "";
         String urlArg = "";
+        IPathFinder pathFinder = null;
+        int parallelism = 1;
 
         // [1] Program setup.
         try
@@ -58,8 +73,14 @@ public class App
 
             // [1.2] Validate received arguments.
             validateArgs(dateArg, urlArg);
-
-            final Map<String, String> logFields = Map.of("date", dateArg, "url", urlArg);
+            final String pathFinderArg = System.getProperty(PATH_FINDER_PROPERTY, "astar");
+            pathFinder = createPathFinder(pathFinderArg);
+            final String parallelismArg = System.getProperty(PARALLELISM_PROPERTY,
+                    String.valueOf(Runtime.getRuntime().availableProcessors()));
+            parallelism = parseParallelism(parallelismArg);
+
+            final Map<String, String> logFields = Map.of("date", dateArg, "url", urlArg,
+                    "pathFinder", pathFinderArg, "parallelism", parallelismArg);
             logger.info("[system] starting PizzaDronz... " + logFields + "\n");
         } catch (IllegalArgumentException e)
         {
@@ -72,9 +93,13 @@ public class App
         {
             final ISystemFileWriter fileWriter = new SystemFileWriter(dateArg, logger);
             final IAPIClient apiClient = new APIClient(urlArg, new DataObjectsFactory());
-            final IPathFinder pathFinder = new PathFinder();
+            // (i) Orders from the same restaurant share the same routes; each is only searched for once.
+            final CachingPathFinder cachingPathFinder = new CachingPathFinder(pathFinder);
+            // (i) Routes are kept across runs, and only searched for again if the airspace|restaurants change.
+            cachingPathFinder.setRouteStore(new RouteStore());
 
-            final int processedOrdersCount = execute(logger, dateArg, apiClient, fileWriter, pathFinder);
+            final int processedOrdersCount =
+                    execute(logger, dateArg, apiClient, fileWriter, cachingPathFinder, parallelism);
 
             // [3] Program termination.
             logger.info(String.format("[system] finished processing %s orders (completed in %.2fs).",
@@ -91,7 +116,7 @@ public class App
     }
 
     /**
-     * Executes the program.
+     * Executes the program, processing orders one at a time.
      *
      * @param logger     the logger to use.
      * @param date       the date to use.
@@ -105,11 +130,34 @@ public class App
                               ISystemFileWriter fileWriter,
                               IPathFinder pathFinder)
             throws Exception
+    {
+        return execute(logger, date, apiClient, fileWriter, pathFinder, 1);
+    }
+
+    /**
+     * Executes the program.
+     *
+     * @param logger      the logger to use.
+     * @param date        the date to use.
+     * @param apiClient   the API client to use.
+     * @param fileWriter  the file writer to use.
+     * @param parallelism the number of orders processed concurrently (1 → sequential); the path finder is expected to
+     *                    be thread-safe if greater than 1.
+     * @return the number of orders processed.
+     */
+    public static int execute(Logger logger,
+                              String date,
+                              IAPIClient apiClient,
+                              ISystemFileWriter fileWriter,
+                              IPathFinder pathFinder,
+                              int parallelism)
+            throws Exception
     {
         Restaurant[] restaurants;
         Map<String, Restaurant> restaurantMap = new HashMap<>();
         Order[] orders;
         NamedRegion[] noFlyZones;
+        NamedRegion centralArea;
 
 
         logger.info("[system] begin data fetching...");
@@ -144,9 +192,9 @@ public class App
 
             // [2.5] Fetch central area.
             //
-            // (i) The path finding algorithm is not designed around circumventing the central area.
-            //     I decided to omit this check entirely as to avoid having to include unnecessary overhead for every
-            //     new position generated by the algorithm.
+            // (i) Once a drone enters the central area, it cannot leave it again; the rule is enforced by the path
+            //     finder as part of its search, see IPathFinder#setCentralArea.
+            centralArea = apiClient.getCentralAreaCoordinates();
 
             final Map<String, Integer> logFields = Map.of(
                     "orders", orders.length,
@@ -165,6 +213,7 @@ public class App
 
         final List<IPathFinder.Result> pathResults = new ArrayList<>();
         pathFinder.setNoFlyZones(noFlyZones);
+        pathFinder.setCentralArea(centralArea);
 
         // [3] Process orders if any were received.
         if (orders.length > 0)
@@ -174,8 +223,8 @@ public class App
             final Restaurant[] finalRestaurants = restaurants; // (for use in lambda)
             final OrderValidation validator = new OrderValidator(date);
 
-            Arrays.stream(orders)
-                    // [3.1] Filter out invalid orders.
+            // [3.1] Filter out invalid orders.
+            final Order[] validOrders = Arrays.stream(orders)
                     .filter(order ->
                     {
                         validator.validateOrder(order, finalRestaurants);
@@ -188,57 +237,44 @@ public class App
                         }
                         return true;
                     })
-                    // [3.2] Calculate the flight path for each remaining order.
-                    .forEach(order ->
-                    {
-                        final long calcStartTime = System.nanoTime();
-
-                        // (i) We have validated that each item in the order is from the same restaurant.
-                        //     In [2.2], we have mapped each menu item to its restaurant instance, as to retrieve its
-                        //     coordinates in O(1) time.
-                        final Restaurant restaurant = restaurantMap.get(order.getPizzasInOrder()[0].name());
-                        final String orderNo = order.getOrderNo();
+                    .toArray(Order[]::new);
 
-                        final LngLat[] positions = new LngLat[]{AT_POSITION, restaurant.location()};
-
-                        // [3.1] Calculate the shortest path between Appleton Tower <> restaurant.
-                        for (int i = 0; i < positions.length; i++)
-                        {
-                            final LngLat from = positions[i];
-                            final LngLat to = positions[i == 0 ? 1 : 0];
-
-                            try
-                            {
-                                final IPathFinder.Result result = pathFinder.findRoute(from, to);
-                                result.setOrderNo(orderNo);
-
-                                // → Handle outcome.
-                                if (result.getOk()) pathResults.add(result);
-                                else
-                                {
-                                    final Map<String, LngLat> logFields = Map.of("from", from, "to", to);
-                                    final String direction = i == 0 ? "outbound" : "inbound";
-                                    logger.warning(
-                                            String.format("[order#%s] failed to find %s path" + logFields, orderNo, direction));
-
-                                    return;
-                                }
-                            } catch (Exception e)
-                            {
-                                logger.warning(String.format("[order#%s] %s", orderNo, e.getMessage()));
-                            }
-
-                            if (i == 1) order.setOrderStatus(OrderStatus.DELIVERED);
-                        }
-
-                        // [3.3] Log calculation metrics.
-                        final Map<String, Object> logFields = Map.of(
-                                "<>", restaurant.name(),
-                                "took", String.format("%.2fms", (System.nanoTime() - calcStartTime) / 1e6));
-                        logger.info(String.format("[order#%s] processed ", orderNo) + logFields);
-                    });
-
-            logger.info("[system] finished flight path calculations\n");
+            // [3.2] Calculate the flight path for each remaining order.
+            //
+            // (i) Each order's results are held in its own slot, and collected in the orders' sequence once every
+            //     flight path has been calculated; the output is therefore identical regardless of parallelism.
+            final IPathFinder.Result[][] orderResults = new IPathFinder.Result[validOrders.length][];
+            final IntConsumer processOrder = index ->
+                    orderResults[index] = processOrder(logger, validOrders[index], restaurantMap, pathFinder);
+
+            if (parallelism <= 1) IntStream.range(0, validOrders.length).forEach(processOrder);
+            else
+            {
+                final ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try
+                {
+                    pool.submit(() -> IntStream.range(0, validOrders.length).parallel().forEach(processOrder)).get();
+                } finally
+                {
+                    pool.shutdown();
+                }
+            }
+            for (IPathFinder.Result[] results : orderResults) pathResults.addAll(Arrays.asList(results));
+
+            // [3.3] Summarise the work of the searches.
+            final SearchStats stats = pathResults.stream()
+                    .map(IPathFinder.Result::getStats)
+                    .reduce(SearchStats.NONE, SearchStats::plus);
+            final Map<String, Object> logFields = new LinkedHashMap<>();
+            logFields.put("routes", pathResults.size());
+            logFields.put("moves", stats.moves());
+            logFields.put("expanded", stats.expanded());
+            logFields.put("generated", stats.generated());
+            logFields.put("stalePops", stats.stalePops());
+            logFields.put("peakOpenSet", stats.peakOpenSet());
+            logFields.put("containmentChecks", stats.containmentChecks());
+            logFields.put("searchTime", String.format("%.2fms", stats.elapsedNanos() / 1e6));
+            logger.info("[system] finished flight path calculations " + logFields + "\n");
         } else
         {
             logger.info("[system] nothing to calculate\n");
@@ -273,6 +309,133 @@ public class App
         return orders.length;
     }
 
+    /**
+     * Calculates the flight path of the given order: Appleton Tower → restaurant → Appleton Tower.
+     * <p>
+     * (i) Orders are processed concurrently in parallel mode; the path finder is expected to be thread-safe.
+     *
+     * @param logger        the logger to use.
+     * @param order         the (valid) order to process.
+     * @param restaurantMap the restaurant of each menu item.
+     * @param pathFinder    the path finder to use.
+     * @return the successful results, in flight order; the order is marked as delivered if both legs were found.
+     */
+    private static IPathFinder.Result[] processOrder(Logger logger,
+                                                     Order order,
+                                                     Map<String, Restaurant> restaurantMap,
+                                                     IPathFinder pathFinder)
+    {
+        final long calcStartTime = System.nanoTime();
+        final List<IPathFinder.Result> results = new ArrayList<>(2);
+
+        // (i) We have validated that each item in the order is from the same restaurant.
+        //     In [2.2], we have mapped each menu item to its restaurant instance, as to retrieve its
+        //     coordinates in O(1) time.
+        final Restaurant restaurant = restaurantMap.get(order.getPizzasInOrder()[0].name());
+        final String orderNo = order.getOrderNo();
+
+        final LngLat[] positions = new LngLat[]{AT_POSITION, restaurant.location()};
+
+        // [1] Calculate the shortest path between Appleton Tower <> restaurant.
+        for (int i = 0; i < positions.length; i++)
+        {
+            final LngLat from = positions[i];
+            final LngLat to = positions[i == 0 ? 1 : 0];
+
+            try
+            {
+                final IPathFinder.Result result = pathFinder.findRoute(from, to);
+                result.setOrderNo(orderNo);
+
+                // → Handle outcome.
+                // (i) Results are held until every order is processed; their routes are compacted in the meantime.
+                if (result.getOk())
+                {
+                    result.compact();
+                    results.add(result);
+                } else
+                {
+                    final Map<String, Object> logFields = new LinkedHashMap<>();
+                    logFields.put("from", from);
+                    logFields.put("to", to);
+                    logFields.put("reason", result.getFailureReason());
+                    final String direction = i == 0 ? "outbound" : "inbound";
+                    logger.warning(
+                            String.format("[order#%s] failed to find %s path" + logFields, orderNo, direction));
+
+                    return results.toArray(IPathFinder.Result[]::new);
+                }
+            } catch (Exception e)
+            {
+                logger.warning(String.format("[order#%s] %s", orderNo, e.getMessage()));
+            }
+
+            if (i == 1) order.setOrderStatus(OrderStatus.DELIVERED);
+        }
+
+        // [2] Log calculation metrics.
+        final Map<String, Object> logFields = Map.of(
+                "<>", restaurant.name(),
+                "took", String.format("%.2fms", (System.nanoTime() - calcStartTime) / 1e6));
+        logger.info(String.format("[order#%s] processed ", orderNo) + logFields);
+
+        return results.toArray(IPathFinder.Result[]::new);
+    }
+
+    /**
+     * Creates the path finder with the given name.
+     *
+     * @param name one of 'astar' (A* over the move lattice), 'jps' (jump point search), 'visibility' (visibility
+     *             graph of the no-fly zones), 'field' (distance field flooded from Appleton Tower) or 'hpa'
+     *             (hierarchical search over clusters of the no-fly zones' surroundings).
+     * @return the path finder.
+     * @throws IllegalArgumentException if the name is not recognised.
+     */
+    public static IPathFinder createPathFinder(String name) throws IllegalArgumentException
+    {
+        final PathFinder aStar = new PathFinder();
+        aStar.setOccupancyRaster(true);
+        aStar.setHeuristic(Heuristic.MOVE_COUNT);
+
+        return switch (name == null ? "" : name)
+        {
+            case "astar" -> aStar;
+            case "jps" ->
+            {
+                final JumpPointPathFinder jumpPoint = new JumpPointPathFinder(aStar);
+                jumpPoint.setOccupancyRaster(true);
+                yield jumpPoint;
+            }
+            case "visibility" -> new VisibilityGraphPathFinder(aStar);
+            case "field" -> new DistanceFieldPathFinder(AT_POSITION, DistanceFieldPathFinder.DEFAULT_RADIUS, aStar);
+            case "hpa" -> new HierarchicalPathFinder(aStar);
+            default -> throw new IllegalArgumentException(String.format(
+                    "'%s' must be one of 'astar', 'jps', 'visibility', 'field' or 'hpa'; received: '%s'",
+                    PATH_FINDER_PROPERTY, name));
+        };
+    }
+
+    /**
+     * Parses the number of orders to process concurrently.
+     *
+     * @param value the string to parse (expects a positive integer).
+     * @return the parallelism.
+     * @throws IllegalArgumentException if the value is not a positive integer.
+     */
+    public static int parseParallelism(String value) throws IllegalArgumentException
+    {
+        try
+        {
+            final int parallelism = Integer.parseInt(value == null ? "" : value.trim());
+            if (parallelism > 0) return parallelism;
+        } catch (NumberFormatException e)
+        {
+            // Handled below.
+        }
+        throw new IllegalArgumentException(
+                String.format("'%s' must be a positive integer; received: '%s'", PARALLELISM_PROPERTY, value));
+    }
+
     /**
      * Validates the program arguments.
      *
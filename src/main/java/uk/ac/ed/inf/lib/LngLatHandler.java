@@ -4,6 +4,7 @@ import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.ilp.interfaces.LngLatHandling;
+import uk.ac.ed.inf.lib.airspace.PreparedRegion;
 
 /**
  * Represents a handler for longitude and latitude calculations.
@@ -27,8 +28,25 @@ public class LngLatHandler implements LngLatHandling
         if (startPosition == null || endPosition == null)
             throw new IllegalArgumentException("The starting and/or ending positions cannot be null.");
 
-        double xDiff = startPosition.lng() - endPosition.lng();
-        double yDiff = startPosition.lat() - endPosition.lat();
+        return distanceTo(startPosition.lng(), startPosition.lat(), endPosition.lng(), endPosition.lat());
+    }
+
+    /**
+     * Calculates the distance between two points within a Euclidean context.
+     * <p>
+     * (i) Identical to {@link #distanceTo(LngLat, LngLat)}, but takes raw coordinates as to avoid allocating
+     * positions on hot paths.
+     *
+     * @param startLng the longitude of the starting position.
+     * @param startLat the latitude of the starting position.
+     * @param endLng   the longitude of the ending position.
+     * @param endLat   the latitude of the ending position.
+     * @return The distance between the two points.
+     */
+    public double distanceTo(double startLng, double startLat, double endLng, double endLat)
+    {
+        double xDiff = startLng - endLng;
+        double yDiff = startLat - endLat;
 
         // If the two points are the same, the distance is 0; exit early to avoid unnecessary calculations.
         if (xDiff == 0 && yDiff == 0) return 0;
@@ -56,6 +74,24 @@ public class LngLatHandler implements LngLatHandling
         return distanceTo(startPosition, otherPosition) < SystemConstants.DRONE_IS_CLOSE_DISTANCE;
     }
 
+    /**
+     * Checks if the two points are close to each other based on the distance tolerance constant
+     * ({@value SystemConstants#DRONE_IS_CLOSE_DISTANCE}).
+     * <p>
+     * (i) Identical to {@link #isCloseTo(LngLat, LngLat)}, but takes raw coordinates as to avoid allocating
+     * positions on hot paths.
+     *
+     * @param startLng the longitude of the starting position.
+     * @param startLat the latitude of the starting position.
+     * @param otherLng the longitude of the other position.
+     * @param otherLat the latitude of the other position.
+     * @return True if the two points are close to each other, false otherwise.
+     */
+    public boolean isCloseTo(double startLng, double startLat, double otherLng, double otherLat)
+    {
+        return distanceTo(startLng, startLat, otherLng, otherLat) < SystemConstants.DRONE_IS_CLOSE_DISTANCE;
+    }
+
     /**
      * Checks if the position is within the region.
      *
@@ -111,6 +147,28 @@ public class LngLatHandler implements LngLatHandling
         return intersectCount % 2 == 1; // odd → inside, even → outside
     }
 
+    /**
+     * Checks if the position is within the region.
+     * <p>
+     * (i) Identical to {@link #isInRegion(LngLat, NamedRegion)}, but reads the region's edges from their prepared form,
+     * such that a region checked repeatedly (e.g. on hot paths) is only processed once. Named apart from the former, as
+     * to keep calls passing a null region unambiguous.
+     *
+     * @param position The position to check.
+     * @param region   The prepared region.
+     * @return True if the position is within the region, false otherwise.
+     * @throws IllegalArgumentException If the position and/or region are null.
+     */
+    public boolean isInPreparedRegion(LngLat position, PreparedRegion region) throws IllegalArgumentException
+    {
+        if (position == null)
+            throw new IllegalArgumentException("The position cannot be null.");
+        if (region == null)
+            throw new IllegalArgumentException("The region cannot be null.");
+
+        return region.contains(position.lng(), position.lat());
+    }
+
     /**
      * Calculates the next position based on the starting position and the angle of movement.
      *
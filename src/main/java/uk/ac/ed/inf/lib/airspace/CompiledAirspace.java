@@ -0,0 +1,169 @@
+package uk.ac.ed.inf.lib.airspace;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * Represents an immutable snapshot of the no-fly zones, compiled once for every lookup a search performs:
+ * <p>
+ * 1. The zones' spatial index (prepared polygons and bounds), see {@link NoFlyZoneIndex}.
+ * <p>
+ * 2. Optionally, their occupancy raster, see {@link OccupancyRaster}.
+ * <p>
+ * 3. The zones' fingerprint, see {@link NoFlyZoneIndex#fingerprintOf(NamedRegion[])}.
+ * <p>
+ * 4. On first use, the connected components of the free space around the zones, see {@link ReachabilityMap}.
+ * </p>
+ * A snapshot is never modified once compiled, and can be shared by any number of threads. Path finders hold the
+ * current snapshot in a single (volatile) field, and read it once per search: replacing the zones swaps the snapshot as
+ * a whole, while searches already in flight finish on the one they started with.
+ */
+public final class CompiledAirspace
+{
+    /**
+     * The airspace without any no-fly zones.
+     */
+    public static final CompiledAirspace EMPTY = new CompiledAirspace(null, null, NoFlyZoneIndex.fingerprintOf(null));
+
+    final private NoFlyZoneIndex index; // (null if there are no zones)
+    final private OccupancyRaster raster; // (optional; null unless compiled)
+    final private long fingerprint;
+    private volatile ReachabilityMap reachability; // (null until first used)
+
+    private CompiledAirspace(NoFlyZoneIndex index, OccupancyRaster raster, long fingerprint)
+    {
+        this.index = index;
+        this.raster = raster;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Compiles the given zones.
+     *
+     * @param zones  the no-fly zones; null if there are none.
+     * @param raster true to compile the occupancy raster of the zones as well, false otherwise.
+     * @return the compiled airspace.
+     * @throws IllegalArgumentException if any zone is not a closed polygon (min. 3 vertices).
+     */
+    public static CompiledAirspace compile(NamedRegion[] zones, boolean raster) throws IllegalArgumentException
+    {
+        if (zones == null) return EMPTY;
+
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(zones);
+        final OccupancyRaster occupancyRaster = raster ? new OccupancyRaster(index) : null;
+        return new CompiledAirspace(index, occupancyRaster, NoFlyZoneIndex.fingerprintOf(zones));
+    }
+
+    /**
+     * Creates a snapshot of the same zones, with|without the occupancy raster.
+     * <p>
+     * (i) The index is shared with this snapshot; the raster is only compiled if it is not already.
+     *
+     * @param raster true to include the occupancy raster, false otherwise.
+     * @return the snapshot; this one if it already matches.
+     */
+    public CompiledAirspace withRaster(boolean raster)
+    {
+        if (index == null || raster == hasRaster()) return this;
+        return new CompiledAirspace(index, raster ? new OccupancyRaster(index) : null, fingerprint);
+    }
+
+    /**
+     * @return the zones' index, or null if there are no zones.
+     */
+    public NoFlyZoneIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @return the zones' occupancy raster, or null if it was not compiled.
+     */
+    public OccupancyRaster getRaster()
+    {
+        return raster;
+    }
+
+    /**
+     * @return the connected components of the free space around the zones (labelled on first use), or null if there
+     * are no zones.
+     */
+    public ReachabilityMap getReachability()
+    {
+        if (index == null) return null;
+
+        final ReachabilityMap reachability = this.reachability;
+        if (reachability != null) return reachability;
+
+        synchronized (this)
+        {
+            if (this.reachability == null) this.reachability = new ReachabilityMap(index);
+            return this.reachability;
+        }
+    }
+
+    /**
+     * @return the fingerprint of the zones the snapshot was compiled from.
+     */
+    public long getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    /**
+     * @return true if the snapshot holds no zones, false otherwise.
+     */
+    public boolean isEmpty()
+    {
+        return index == null;
+    }
+
+    /**
+     * @return true if the occupancy raster was compiled, false otherwise.
+     */
+    public boolean hasRaster()
+    {
+        return raster != null;
+    }
+
+    /**
+     * Checks if the position is within any of the zones.
+     *
+     * @param position the position to check.
+     * @return true if the position is within any of the zones, false otherwise.
+     */
+    public boolean contains(LngLat position)
+    {
+        return contains(position.lng(), position.lat());
+    }
+
+    /**
+     * Checks if the position is within any of the zones.
+     * <p>
+     * (i) The raster answers first if compiled; only positions on a zone's boundary are checked against the index.
+     *
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return true if the position is within any of the zones, false otherwise.
+     */
+    public boolean contains(double lng, double lat)
+    {
+        if (raster != null) return raster.contains(lng, lat);
+        return index != null && index.contains(lng, lat);
+    }
+
+    /**
+     * Checks if the segment between the two positions crosses any of the zones' edges, see
+     * {@link NoFlyZoneIndex#crossesEdge(double, double, double, double)}.
+     *
+     * @param fromLng the longitude of the segment's first endpoint.
+     * @param fromLat the latitude of the segment's first endpoint.
+     * @param toLng   the longitude of the segment's second endpoint.
+     * @param toLat   the latitude of the segment's second endpoint.
+     * @return true if the segment crosses any edge, false otherwise.
+     */
+    public boolean crosses(double fromLng, double fromLat, double toLng, double toLat)
+    {
+        return index != null && index.crossesEdge(fromLng, fromLat, toLng, toLat);
+    }
+}
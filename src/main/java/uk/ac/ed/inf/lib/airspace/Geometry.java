@@ -0,0 +1,122 @@
+package uk.ac.ed.inf.lib.airspace;
+
+/**
+ * Represents the geometric primitives shared by the airspace structures.
+ */
+final class Geometry
+{
+    private Geometry()
+    {
+    }
+
+    /**
+     * Checks if the segment AB intersects (or lies within) the axis-aligned box, using the Liang–Barsky clipping
+     * algorithm.
+     *
+     * @return true if any part of the segment lies within the box, false otherwise.
+     */
+    static boolean segmentIntersectsBox(double ax, double ay, double bx, double by,
+                                        double minX, double minY, double maxX, double maxY)
+    {
+        final double dx = bx - ax;
+        final double dy = by - ay;
+
+        // The segment is parametrised as A + t·(B - A), t ∈ [0, 1]; each side of the box narrows the range of t.
+        double tMin = 0;
+        double tMax = 1;
+        for (int side = 0; side < 4; side++)
+        {
+            final double p, q;
+            switch (side)
+            {
+                case 0 -> { p = -dx; q = ax - minX; }
+                case 1 -> { p = dx; q = maxX - ax; }
+                case 2 -> { p = -dy; q = ay - minY; }
+                default -> { p = dy; q = maxY - ay; }
+            }
+
+            if (p == 0)
+            {
+                if (q < 0) return false; // (parallel to, and outside of, this side)
+                continue;
+            }
+
+            final double t = q / p;
+            if (p < 0)
+            {
+                if (t > tMax) return false;
+                if (t > tMin) tMin = t;
+            } else
+            {
+                if (t < tMin) return false;
+                if (t < tMax) tMax = t;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the distance between the segments AB and CD (0 if they intersect).
+     */
+    static double segmentDistance(double ax, double ay, double bx, double by,
+                                  double cx, double cy, double dx, double dy)
+    {
+        if (segmentsIntersect(ax, ay, bx, by, cx, cy, dx, dy)) return 0;
+
+        // (i) Non-intersecting segments are closest at one of their endpoints.
+        return Math.min(
+                Math.min(pointSegmentDistance(ax, ay, cx, cy, dx, dy), pointSegmentDistance(bx, by, cx, cy, dx, dy)),
+                Math.min(pointSegmentDistance(cx, cy, ax, ay, bx, by), pointSegmentDistance(dx, dy, ax, ay, bx, by)));
+    }
+
+    /**
+     * @return the distance between the point P and the segment AB.
+     */
+    static double pointSegmentDistance(double px, double py, double ax, double ay, double bx, double by)
+    {
+        final double abx = bx - ax;
+        final double aby = by - ay;
+        final double lengthSquared = abx * abx + aby * aby;
+
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * abx + (py - ay) * aby) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        return Math.hypot(px - (ax + t * abx), py - (ay + t * aby));
+    }
+
+    /**
+     * @return true if the segments AB and CD share at least one point, false otherwise.
+     */
+    static boolean segmentsIntersect(double ax, double ay, double bx, double by,
+                                     double cx, double cy, double dx, double dy)
+    {
+        final double d1 = cross(cx, cy, dx, dy, ax, ay);
+        final double d2 = cross(cx, cy, dx, dy, bx, by);
+        final double d3 = cross(ax, ay, bx, by, cx, cy);
+        final double d4 = cross(ax, ay, bx, by, dx, dy);
+
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) return true;
+
+        // Collinear|touching cases: an endpoint lying on the other segment.
+        return (d1 == 0 && isOnSegment(cx, cy, dx, dy, ax, ay))
+                || (d2 == 0 && isOnSegment(cx, cy, dx, dy, bx, by))
+                || (d3 == 0 && isOnSegment(ax, ay, bx, by, cx, cy))
+                || (d4 == 0 && isOnSegment(ax, ay, bx, by, dx, dy));
+    }
+
+    /**
+     * @return the z-component of (B - A) × (P - A); positive if P lies to the left of AB.
+     */
+    private static double cross(double ax, double ay, double bx, double by, double px, double py)
+    {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    /**
+     * @return true if the point P, known to be collinear with AB, lies within the segment's bounds.
+     */
+    private static boolean isOnSegment(double ax, double ay, double bx, double by, double px, double py)
+    {
+        return Math.min(ax, bx) <= px && px <= Math.max(ax, bx) && Math.min(ay, by) <= py && py <= Math.max(ay, by);
+    }
+}
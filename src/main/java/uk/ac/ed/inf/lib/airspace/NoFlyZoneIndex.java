@@ -0,0 +1,457 @@
+package uk.ac.ed.inf.lib.airspace;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+import java.util.Arrays;
+
+/**
+ * Represents a spatial index over a set of no-fly zones.
+ * <p>
+ * The index is built once, and consists of:
+ * <p>
+ * 1. Every zone in its prepared form, along with its bounds, see {@link PreparedRegion}.
+ * <p>
+ * 2. A uniform grid over the zones' overall bounds, where each cell lists the edges crossing it, and the zones which
+ * either fully contain the cell, or have an edge crossing it.
+ * </p>
+ * A containment query is resolved from the point's cell alone: zones fully containing the cell answer immediately, and
+ * only the zones with an edge crossing the cell are ray-cast. The cost of a query therefore scales with the geometry
+ * near the point rather than with the number of zones.
+ * <p>
+ * Queries are identical to {@link uk.ac.ed.inf.lib.LngLatHandler#isInRegion(LngLat, NamedRegion)}. The index is
+ * immutable, and can be shared between threads.
+ */
+public class NoFlyZoneIndex
+{
+    // (i) Edges are considered to cross a cell if they pass within this distance of it, such that cells deemed free of
+    //     edges are not subject to floating-point error on their boundary.
+    private static final double EDGE_PADDING = 1e-12;
+    // (i) Number of cells to allocate per edge, and the upper limit on the number of cells along each axis.
+    private static final int CELLS_PER_EDGE = 16;
+    private static final int MAX_CELLS_PER_AXIS = 1024;
+
+    private static final byte BOUNDARY = 0;
+    private static final byte INSIDE = 1;
+
+    final private NamedRegion[] zones;
+    final private PreparedRegion[] prepared;
+
+    // [zones] vertex coordinates (flattened), and the range of vertices belonging to each zone.
+    final private double[] xs;
+    final private double[] ys;
+    final private int[] vertexStart;
+    final private int[] nextVertices; // (the vertex ending the edge starting at each vertex)
+
+    // [grid]
+    final private double minLng;
+    final private double minLat;
+    final private double maxLng;
+    final private double maxLat;
+    final private double cellSize;
+    final private int columns;
+    final private int rows;
+
+    // [grid] per cell (compressed): the zones to consider, and whether the cell is fully inside the zone.
+    final private int[] cellZoneStart;
+    final private int[] cellZones;
+    final private byte[] cellZoneStates;
+
+    // [grid] per cell (compressed): the edges crossing the cell (identified by their first vertex).
+    final private int[] cellEdgeStart;
+    final private int[] cellEdges;
+
+    /**
+     * Constructs the index.
+     *
+     * @param zones the no-fly zones to index.
+     * @throws IllegalArgumentException if the zones are null, or any zone is not a closed polygon (min. 3 vertices).
+     */
+    public NoFlyZoneIndex(NamedRegion[] zones) throws IllegalArgumentException
+    {
+        if (zones == null)
+            throw new IllegalArgumentException("zones cannot be null");
+
+        this.zones = zones.clone();
+
+        // [1] Flatten the zones' vertices, and compute their bounds.
+        int vertexCount = 0;
+        for (NamedRegion zone : zones)
+        {
+            if (zone == null || zone.vertices() == null || zone.vertices().length < 3)
+                throw new IllegalArgumentException("every zone must be a closed polygon (min. 3 vertices)");
+            vertexCount += zone.vertices().length;
+        }
+
+        final int zoneCount = zones.length;
+        xs = new double[vertexCount];
+        ys = new double[vertexCount];
+        vertexStart = new int[zoneCount + 1];
+        nextVertices = new int[vertexCount];
+        prepared = new PreparedRegion[zoneCount];
+
+        double minLng = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (int z = 0, v = 0; z < zoneCount; z++)
+        {
+            vertexStart[z] = v;
+            for (LngLat vertex : zones[z].vertices())
+            {
+                xs[v] = vertex.lng();
+                ys[v++] = vertex.lat();
+            }
+            vertexStart[z + 1] = v;
+            for (int i = vertexStart[z]; i < v; i++) nextVertices[i] = i + 1 == v ? vertexStart[z] : i + 1;
+
+            prepared[z] = new PreparedRegion(zones[z]);
+            minLng = Math.min(minLng, prepared[z].getMinLng());
+            minLat = Math.min(minLat, prepared[z].getMinLat());
+            maxLng = Math.max(maxLng, prepared[z].getMaxLng());
+            maxLat = Math.max(maxLat, prepared[z].getMaxLat());
+        }
+
+        // [2] Lay out the grid over the zones' overall bounds, with (roughly) a fixed number of cells per edge.
+        if (zoneCount == 0)
+        {
+            minLng = minLat = maxLng = maxLat = 0;
+        }
+        final double width = maxLng - minLng;
+        final double height = maxLat - minLat;
+        final double area = Math.max(width * height, Double.MIN_NORMAL);
+        double cellSize = Math.sqrt(area / Math.max(1, (double) vertexCount * CELLS_PER_EDGE));
+        cellSize = Math.max(cellSize, Math.max(width, height) / MAX_CELLS_PER_AXIS);
+        if (!(cellSize > 0)) cellSize = 1;
+
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.maxLng = maxLng;
+        this.maxLat = maxLat;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+
+        // [3] Classify every cell against every zone whose bounds overlap it.
+        final IntPairs zoneEntries = new IntPairs();
+        final IntPairs edgeEntries = new IntPairs();
+        for (int z = 0; z < zoneCount; z++) indexZone(z, zoneEntries, edgeEntries);
+
+        final int cellCount = columns * rows;
+        cellZoneStart = new int[cellCount + 1];
+        cellZones = new int[zoneEntries.size];
+        cellZoneStates = new byte[zoneEntries.size];
+        zoneEntries.compress(cellZoneStart, cellZones, cellZoneStates);
+
+        cellEdgeStart = new int[cellCount + 1];
+        cellEdges = new int[edgeEntries.size];
+        edgeEntries.compress(cellEdgeStart, cellEdges, null);
+    }
+
+    /**
+     * Computes a fingerprint of the given zones' geometry, such that results derived from one set of zones can be told
+     * apart from those derived from another.
+     * <p>
+     * (i) Only the vertices (and their order) are considered; the zones' names are not.
+     *
+     * @param zones the zones to fingerprint; null is treated as no zones.
+     * @return the (64-bit FNV-1a) fingerprint.
+     */
+    public static long fingerprintOf(NamedRegion[] zones)
+    {
+        long hash = 0xCBF29CE484222325L;
+        if (zones == null) return hash;
+
+        for (NamedRegion zone : zones)
+        {
+            final LngLat[] vertices = zone == null || zone.vertices() == null ? new LngLat[0] : zone.vertices();
+            hash = (hash ^ vertices.length) * 0x100000001B3L;
+            for (LngLat vertex : vertices)
+            {
+                hash = (hash ^ Double.doubleToLongBits(vertex.lng())) * 0x100000001B3L;
+                hash = (hash ^ Double.doubleToLongBits(vertex.lat())) * 0x100000001B3L;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the number of indexed zones.
+     */
+    public int size()
+    {
+        return zones.length;
+    }
+
+    /**
+     * @return the zone at the given index.
+     */
+    public NamedRegion getZone(int index)
+    {
+        return zones[index];
+    }
+
+    public double getMinLng()
+    {
+        return minLng;
+    }
+
+    public double getMinLat()
+    {
+        return minLat;
+    }
+
+    public double getMaxLng()
+    {
+        return maxLng;
+    }
+
+    public double getMaxLat()
+    {
+        return maxLat;
+    }
+
+    /**
+     * @return the index of the first vertex of the given zone within {@link #getX(int)} and {@link #getY(int)}.
+     */
+    int getVertexStart(int zone)
+    {
+        return vertexStart[zone];
+    }
+
+    /**
+     * @return the (exclusive) index of the last vertex of the given zone.
+     */
+    int getVertexEnd(int zone)
+    {
+        return vertexStart[zone + 1];
+    }
+
+    double getX(int vertex)
+    {
+        return xs[vertex];
+    }
+
+    double getY(int vertex)
+    {
+        return ys[vertex];
+    }
+
+    /**
+     * Checks if the position is within any of the zones.
+     *
+     * @param position the position to check.
+     * @return true if the position is within any of the zones, false otherwise.
+     */
+    public boolean contains(LngLat position)
+    {
+        return contains(position.lng(), position.lat());
+    }
+
+    /**
+     * Checks if the position is within any of the zones.
+     *
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return true if the position is within any of the zones, false otherwise.
+     */
+    public boolean contains(double lng, double lat)
+    {
+        return indexOf(lng, lat) >= 0;
+    }
+
+    /**
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return the index of the (first) zone containing the position, or -1 if the position is not within any zone.
+     */
+    public int indexOf(double lng, double lat)
+    {
+        final int cell = cellOf(lng, lat);
+        if (cell < 0) return -1;
+
+        for (int k = cellZoneStart[cell]; k < cellZoneStart[cell + 1]; k++)
+        {
+            final int zone = cellZones[k];
+            if (cellZoneStates[k] == INSIDE || isInZone(zone, lng, lat)) return zone;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if the segment between the two positions crosses (or touches) any of the zones' edges.
+     * <p>
+     * Only the edges listed by the grid cells the segment passes through are tested, such that the cost of a query
+     * scales with the geometry along the segment rather than with the number of edges; a segment outside the grid is
+     * rejected by its bounds alone.
+     * <p>
+     * (i) A segment lying entirely within a zone crosses no edge. Along with a containment check of either endpoint,
+     * the check tells whether any part of the segment lies within a zone.
+     *
+     * @param ax the longitude of the segment's first endpoint.
+     * @param ay the latitude of the segment's first endpoint.
+     * @param bx the longitude of the segment's second endpoint.
+     * @param by the latitude of the segment's second endpoint.
+     * @return true if the segment crosses any edge, false otherwise.
+     */
+    public boolean crossesEdge(double ax, double ay, double bx, double by)
+    {
+        final double minX = Math.min(ax, bx), maxX = Math.max(ax, bx);
+        final double minY = Math.min(ay, by), maxY = Math.max(ay, by);
+        if (maxX < minLng - EDGE_PADDING || minX > maxLng + EDGE_PADDING ||
+                maxY < minLat - EDGE_PADDING || minY > maxLat + EDGE_PADDING) return false;
+
+        for (int row = rowOf(minY - EDGE_PADDING); row <= rowOf(maxY + EDGE_PADDING); row++)
+        {
+            for (int column = columnOf(minX - EDGE_PADDING); column <= columnOf(maxX + EDGE_PADDING); column++)
+            {
+                final int cell = row * columns + column;
+                if (cellEdgeStart[cell] == cellEdgeStart[cell + 1]) continue;
+
+                final double cellLng = minLng + column * cellSize;
+                final double cellLat = minLat + row * cellSize;
+                if (!Geometry.segmentIntersectsBox(ax, ay, bx, by,
+                        cellLng - EDGE_PADDING, cellLat - EDGE_PADDING,
+                        cellLng + cellSize + EDGE_PADDING, cellLat + cellSize + EDGE_PADDING))
+                    continue;
+
+                for (int k = cellEdgeStart[cell]; k < cellEdgeStart[cell + 1]; k++)
+                {
+                    final int i = cellEdges[k];
+                    final int next = nextVertices[i];
+                    if (Geometry.segmentsIntersect(ax, ay, bx, by, xs[i], ys[i], xs[next], ys[next])) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the cell the position falls in, or -1 if it is outside the grid (and thus every zone).
+     */
+    private int cellOf(double lng, double lat)
+    {
+        if (!(lng >= minLng && lng < maxLng && lat >= minLat && lat < maxLat)) return -1;
+
+        final int column = Math.min(columns - 1, (int) ((lng - minLng) / cellSize));
+        final int row = Math.min(rows - 1, (int) ((lat - minLat) / cellSize));
+        return row * columns + column;
+    }
+
+    /**
+     * Checks if the position is within the given zone, see {@link PreparedRegion#contains(double, double)}.
+     */
+    boolean isInZone(int zone, double xp, double yp)
+    {
+        return prepared[zone].contains(xp, yp);
+    }
+
+    /**
+     * Records the edges of the given zone against the cells they cross, and the cells the zone either crosses or fully
+     * contains.
+     */
+    private void indexZone(int zone, IntPairs zoneEntries, IntPairs edgeEntries)
+    {
+        final int firstColumn = columnOf(prepared[zone].getMinLng());
+        final int lastColumn = columnOf(prepared[zone].getMaxLng());
+        final int firstRow = rowOf(prepared[zone].getMinLat());
+        final int lastRow = rowOf(prepared[zone].getMaxLat());
+        final int width = lastColumn - firstColumn + 1;
+
+        final boolean[] isBoundary = new boolean[width * (lastRow - firstRow + 1)];
+
+        // [1] Cells crossed by any of the zone's edges.
+        final int start = vertexStart[zone];
+        final int end = vertexStart[zone + 1];
+        for (int i = start; i < end; i++)
+        {
+            final int next = i + 1 == end ? start : i + 1;
+            final double x1 = xs[i], y1 = ys[i], x2 = xs[next], y2 = ys[next];
+
+            for (int row = rowOf(Math.min(y1, y2) - EDGE_PADDING); row <= rowOf(Math.max(y1, y2) + EDGE_PADDING); row++)
+            {
+                for (int column = columnOf(Math.min(x1, x2) - EDGE_PADDING);
+                     column <= columnOf(Math.max(x1, x2) + EDGE_PADDING); column++)
+                {
+                    final double cellLng = minLng + column * cellSize;
+                    final double cellLat = minLat + row * cellSize;
+                    if (!Geometry.segmentIntersectsBox(x1, y1, x2, y2,
+                            cellLng - EDGE_PADDING, cellLat - EDGE_PADDING,
+                            cellLng + cellSize + EDGE_PADDING, cellLat + cellSize + EDGE_PADDING))
+                        continue;
+
+                    final int cell = row * columns + column;
+                    edgeEntries.add(cell, i, (byte) 0);
+
+                    // (i) The padding may reach cells just outside the zone's bounds; these are of no concern.
+                    if (row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn)
+                        isBoundary[(row - firstRow) * width + (column - firstColumn)] = true;
+                }
+            }
+        }
+
+        // [2] Cells either crossed by the zone, or fully contained by it (no edge crosses the cell, and its centre is
+        //     within the zone).
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                final int cell = row * columns + column;
+                if (isBoundary[(row - firstRow) * width + (column - firstColumn)])
+                    zoneEntries.add(cell, zone, BOUNDARY);
+                else if (isInZone(zone, minLng + (column + 0.5) * cellSize, minLat + (row + 0.5) * cellSize))
+                    zoneEntries.add(cell, zone, INSIDE);
+            }
+        }
+    }
+
+    private int columnOf(double lng)
+    {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((lng - minLng) / cellSize)));
+    }
+
+    private int rowOf(double lat)
+    {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat - minLat) / cellSize)));
+    }
+
+    /**
+     * Represents a growable list of (cell, value, state) entries, compressed into per-cell ranges once complete.
+     */
+    private static class IntPairs
+    {
+        private int[] cells = new int[64];
+        private int[] values = new int[64];
+        private byte[] states = new byte[64];
+        private int size;
+
+        void add(int cell, int value, byte state)
+        {
+            if (size == cells.length)
+            {
+                cells = Arrays.copyOf(cells, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+            }
+            cells[size] = cell;
+            values[size] = value;
+            states[size++] = state;
+        }
+
+        /**
+         * Sorts the entries by cell (counting sort, stable), such that the entries of cell c are found in
+         * [start[c], start[c + 1]).
+         */
+        void compress(int[] start, int[] sortedValues, byte[] sortedStates)
+        {
+            for (int k = 0; k < size; k++) start[cells[k] + 1]++;
+            for (int c = 1; c < start.length; c++) start[c] += start[c - 1];
+
+            final int[] cursor = Arrays.copyOf(start, start.length - 1);
+            for (int k = 0; k < size; k++)
+            {
+                final int position = cursor[cells[k]]++;
+                sortedValues[position] = values[k];
+                if (sortedStates != null) sortedStates[position] = states[k];
+            }
+        }
+    }
+}
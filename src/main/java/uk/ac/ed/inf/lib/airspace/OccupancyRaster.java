@@ -0,0 +1,245 @@
+package uk.ac.ed.inf.lib.airspace;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+
+/**
+ * Represents a precompiled occupancy raster of a set of no-fly zones.
+ * <p>
+ * The zones' bounds are divided into square cells (finer than a {@value SystemConstants#DRONE_MOVE_DISTANCE} move by
+ * default), each of which is marked as either fully free, fully blocked, or on the boundary of a zone. The states are
+ * held in a bitset (2 bits per cell), such that most containment queries are answered by a single lookup; only
+ * positions falling in a boundary cell are ray-cast through the underlying {@link NoFlyZoneIndex}.
+ * <p>
+ * Queries are identical to those of the underlying index. The raster is immutable, and can be shared between threads.
+ */
+public class OccupancyRaster
+{
+    /**
+     * The default length of a cell's side (¼ of a move).
+     */
+    public static final double DEFAULT_RESOLUTION = SystemConstants.DRONE_MOVE_DISTANCE / 4;
+
+    public static final byte FREE = 0;
+    public static final byte BLOCKED = 1;
+    public static final byte BOUNDARY = 2;
+
+    // (i) The upper limit on the number of cells (16 MiB worth of states); the resolution is coarsened beyond it.
+    private static final long MAX_CELLS = 1L << 26;
+    // (i) See `NoFlyZoneIndex#EDGE_PADDING`.
+    private static final double EDGE_PADDING = 1e-12;
+
+    final private NoFlyZoneIndex index;
+
+    final private double minLng;
+    final private double minLat;
+    final private double maxLng;
+    final private double maxLat;
+    final private double cellSize;
+    final private int columns;
+    final private int rows;
+
+    // 2 bits per cell (32 cells per word).
+    final private long[] states;
+
+    /**
+     * Constructs a raster with the {@link #DEFAULT_RESOLUTION}.
+     *
+     * @param index the index of the zones to rasterise.
+     */
+    public OccupancyRaster(NoFlyZoneIndex index)
+    {
+        this(index, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Constructs a raster.
+     *
+     * @param index      the index of the zones to rasterise.
+     * @param resolution the length of a cell's side (in degrees); coarsened if the raster would grow too large.
+     * @throws IllegalArgumentException if the index is null or the resolution is not positive.
+     */
+    public OccupancyRaster(NoFlyZoneIndex index, double resolution) throws IllegalArgumentException
+    {
+        if (index == null)
+            throw new IllegalArgumentException("index cannot be null");
+        if (!(resolution > 0))
+            throw new IllegalArgumentException("resolution must be positive");
+
+        this.index = index;
+        this.minLng = index.getMinLng();
+        this.minLat = index.getMinLat();
+        this.maxLng = index.getMaxLng();
+        this.maxLat = index.getMaxLat();
+
+        final double width = maxLng - minLng;
+        final double height = maxLat - minLat;
+        double cellSize = resolution;
+        while (Math.ceil(width / cellSize) * Math.ceil(height / cellSize) > MAX_CELLS) cellSize *= 2;
+
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.states = new long[(int) (((long) columns * rows + 31) >>> 5)];
+
+        rasterise();
+    }
+
+    public double getResolution()
+    {
+        return cellSize;
+    }
+
+    /**
+     * @return the longitude of the raster's western edge (that of the zones' bounds).
+     */
+    public double getMinLng()
+    {
+        return minLng;
+    }
+
+    /**
+     * @return the latitude of the raster's southern edge (that of the zones' bounds).
+     */
+    public double getMinLat()
+    {
+        return minLat;
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * @param column the column of the cell (0 to {@link #getColumns()} exclusive).
+     * @param row    the row of the cell (0 to {@link #getRows()} exclusive).
+     * @return the state of the given cell: {@link #FREE}, {@link #BLOCKED} or {@link #BOUNDARY}.
+     */
+    public byte classifyCell(int column, int row)
+    {
+        return stateOf(row * columns + column);
+    }
+
+    /**
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return the state of the cell the position falls in: {@link #FREE}, {@link #BLOCKED} or {@link #BOUNDARY}.
+     */
+    public byte classify(double lng, double lat)
+    {
+        if (!(lng >= minLng && lng < maxLng && lat >= minLat && lat < maxLat)) return FREE;
+
+        final int column = Math.min(columns - 1, (int) ((lng - minLng) / cellSize));
+        final int row = Math.min(rows - 1, (int) ((lat - minLat) / cellSize));
+        return stateOf(row * columns + column);
+    }
+
+    /**
+     * Checks if the position is within any of the zones.
+     *
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return true if the position is within any of the zones, false otherwise.
+     */
+    public boolean contains(double lng, double lat)
+    {
+        return switch (classify(lng, lat))
+        {
+            case FREE -> false;
+            case BLOCKED -> true;
+            default -> index.contains(lng, lat); // (boundary cells require the exact check)
+        };
+    }
+
+    /**
+     * @return the fraction of cells (0 to 1) on the boundary of a zone, i.e. requiring the exact check.
+     */
+    public double getBoundaryFraction()
+    {
+        long count = 0;
+        final int cellCount = columns * rows;
+        for (int cell = 0; cell < cellCount; cell++) if (stateOf(cell) == BOUNDARY) count++;
+        return (double) count / cellCount;
+    }
+
+    private byte stateOf(int cell)
+    {
+        return (byte) ((states[cell >>> 5] >>> ((cell & 31) << 1)) & 3);
+    }
+
+    private void setState(int cell, byte state)
+    {
+        final int shift = (cell & 31) << 1;
+        states[cell >>> 5] = (states[cell >>> 5] & ~(3L << shift)) | ((long) state << shift);
+    }
+
+    /**
+     * Marks every cell crossed by an edge as a boundary cell, then resolves the remaining cells row by row.
+     * <p>
+     * (i) Consecutive non-boundary cells within a row form a connected area that no edge crosses, and thus share the
+     * same state; a single exact check per run suffices.
+     */
+    private void rasterise()
+    {
+        // [1] Boundary cells.
+        for (int zone = 0; zone < index.size(); zone++)
+        {
+            final int start = index.getVertexStart(zone);
+            final int end = index.getVertexEnd(zone);
+            for (int i = start; i < end; i++)
+            {
+                final int next = i + 1 == end ? start : i + 1;
+                final double x1 = index.getX(i), y1 = index.getY(i), x2 = index.getX(next), y2 = index.getY(next);
+
+                final int lastRow = rowOf(Math.max(y1, y2) + EDGE_PADDING);
+                final int lastColumn = columnOf(Math.max(x1, x2) + EDGE_PADDING);
+                for (int row = rowOf(Math.min(y1, y2) - EDGE_PADDING); row <= lastRow; row++)
+                {
+                    for (int column = columnOf(Math.min(x1, x2) - EDGE_PADDING); column <= lastColumn; column++)
+                    {
+                        final double cellLng = minLng + column * cellSize;
+                        final double cellLat = minLat + row * cellSize;
+                        if (Geometry.segmentIntersectsBox(x1, y1, x2, y2,
+                                cellLng - EDGE_PADDING, cellLat - EDGE_PADDING,
+                                cellLng + cellSize + EDGE_PADDING, cellLat + cellSize + EDGE_PADDING))
+                            setState(row * columns + column, BOUNDARY);
+                    }
+                }
+            }
+        }
+
+        // [2] Runs of free|blocked cells.
+        for (int row = 0; row < rows; row++)
+        {
+            int column = 0;
+            while (column < columns)
+            {
+                if (stateOf(row * columns + column) == BOUNDARY)
+                {
+                    column++;
+                    continue;
+                }
+
+                final double lat = minLat + (row + 0.5) * cellSize;
+                final byte state = index.contains(minLng + (column + 0.5) * cellSize, lat) ? BLOCKED : FREE;
+                for (; column < columns && stateOf(row * columns + column) != BOUNDARY; column++)
+                    setState(row * columns + column, state);
+            }
+        }
+    }
+
+    private int columnOf(double lng)
+    {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((lng - minLng) / cellSize)));
+    }
+
+    private int rowOf(double lat)
+    {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat - minLat) / cellSize)));
+    }
+}
@@ -0,0 +1,154 @@
+package uk.ac.ed.inf.lib.airspace;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+
+/**
+ * Represents a {@link NamedRegion} prepared for repeated containment checks.
+ * <p>
+ * The region's vertices are copied once into flat coordinate arrays (closed by repeating the first vertex, such that
+ * the last edge needs no wrap-around), along with the extent of every edge and the bounds outside which the ray
+ * casting algorithm cannot answer true. A check then reads the arrays in order, and positions outside the bounds are
+ * rejected without visiting a single edge.
+ * <p>
+ * (i) Checks are identical to {@link uk.ac.ed.inf.lib.LngLatHandler#isInRegion(LngLat, NamedRegion)}: the extents are
+ * computed as the original computes them per check, and combined in the same order. (A precomputed inverse slope
+ * would save the division, but round differently.) The prepared region is immutable, and can be shared between
+ * threads.
+ */
+public final class PreparedRegion
+{
+    final private NamedRegion region;
+
+    // [vertices] (n + 1 entries; the first vertex is repeated last)
+    final private double[] xs;
+    final private double[] ys;
+
+    // [edges] the extent of the edge starting at each vertex (n entries).
+    final private double[] dxs;
+    final private double[] dys;
+
+    // [bounds]
+    final private double minLng;
+    final private double minLat;
+    final private double maxLng;
+    final private double maxLat;
+
+    /**
+     * Prepares the given region.
+     *
+     * @param region the region as a closed polygon (min. 3 vertices).
+     * @throws IllegalArgumentException if the region is null, or not a closed polygon.
+     */
+    public PreparedRegion(NamedRegion region) throws IllegalArgumentException
+    {
+        if (region == null)
+            throw new IllegalArgumentException("region cannot be null");
+
+        final LngLat[] vertices = region.vertices();
+        if (vertices == null || vertices.length < 3)
+            throw new IllegalArgumentException("region must be a closed polygon (min. 3 vertices)");
+
+        final int n = vertices.length;
+        this.region = region;
+        this.xs = new double[n + 1];
+        this.ys = new double[n + 1];
+        this.dxs = new double[n];
+        this.dys = new double[n];
+        for (int i = 0; i <= n; i++)
+        {
+            xs[i] = vertices[i % n].lng();
+            ys[i] = vertices[i % n].lat();
+        }
+
+        // Along the latitude axis, an edge is only crossed if the position's latitude lies within [min, max). Along
+        // the longitude axis, the computed intersection of an edge is bounded by its first vertex and the (rounded)
+        // sum of its first vertex and its extent, which may differ from its second vertex by a rounding error.
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++)
+        {
+            dxs[i] = xs[i + 1] - xs[i];
+            dys[i] = ys[i + 1] - ys[i];
+
+            final double x2 = xs[i] + dxs[i];
+            minX = Math.min(minX, Math.min(xs[i], x2));
+            maxX = Math.max(maxX, Math.max(xs[i], x2));
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        this.minLng = minX;
+        this.minLat = minY;
+        this.maxLng = maxX;
+        this.maxLat = maxY;
+    }
+
+    /**
+     * @return the region as given.
+     */
+    public NamedRegion getRegion()
+    {
+        return region;
+    }
+
+    /**
+     * @return the number of vertices (and edges) of the region.
+     */
+    public int size()
+    {
+        return dxs.length;
+    }
+
+    public double getMinLng()
+    {
+        return minLng;
+    }
+
+    public double getMinLat()
+    {
+        return minLat;
+    }
+
+    public double getMaxLng()
+    {
+        return maxLng;
+    }
+
+    public double getMaxLat()
+    {
+        return maxLat;
+    }
+
+    /**
+     * Checks if the position is within the region.
+     *
+     * @param position the position to check.
+     * @return true if the position is within the region, false otherwise.
+     */
+    public boolean contains(LngLat position)
+    {
+        return contains(position.lng(), position.lat());
+    }
+
+    /**
+     * Checks if the position is within the region using the ray casting algorithm.
+     *
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return true if the position is within the region, false otherwise.
+     */
+    public boolean contains(double lng, double lat)
+    {
+        if (lng < minLng || lng >= maxLng || lat < minLat || lat >= maxLat) return false;
+
+        int intersectCount = 0;
+        for (int i = 0; i < dxs.length; i++)
+        {
+            final double y1 = ys[i];
+            if ((lat < y1) != (lat < ys[i + 1]) && lng < xs[i] + ((lat - y1) / dys[i]) * dxs[i]) intersectCount++;
+        }
+
+        return intersectCount % 2 == 1; // odd → inside, even → outside
+    }
+}
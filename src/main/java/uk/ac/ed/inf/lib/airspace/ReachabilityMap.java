@@ -0,0 +1,223 @@
+package uk.ac.ed.inf.lib.airspace;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+
+/**
+ * Represents the connected components of the free space around a set of no-fly zones, labelled on a coarse raster.
+ * <p>
+ * Every cell which is not fully blocked (see {@link OccupancyRaster}) may hold a position the drone can reach, and two
+ * such cells are connected if a single move can lead from one to the other, i.e. if they lie within a move's distance
+ * of each other along both axes. Cells connected to the space outside the zones' bounds (which is free, and connected)
+ * share the exterior component.
+ * <p>
+ * (i) The components over-approximate the free space: positions in different components can never be joined by a
+ * route, while positions in the same component may still be (e.g. if a passage is narrower than the lattice allows
+ * for). Searches therefore use the map to rule out unreachable destinations up front, and only that.
+ * <p>
+ * The map is immutable, and can be shared between threads.
+ */
+public final class ReachabilityMap
+{
+    /**
+     * The label of the component extending beyond the zones' bounds.
+     */
+    public static final int EXTERIOR = 0;
+
+    /**
+     * The label of a fully blocked cell, which no position can be reached in.
+     */
+    public static final int BLOCKED = -1;
+
+    // (i) The finest length of a cell's side (½ of a move); coarsened such that the map holds at most `MAX_CELLS`.
+    private static final double RESOLUTION = SystemConstants.DRONE_MOVE_DISTANCE / 2;
+    private static final long MAX_CELLS = 1L << 20;
+    private static final double EDGE_PADDING = 1e-12;
+
+    final private double minLng;
+    final private double minLat;
+    final private double cellSize;
+    final private int columns;
+    final private int rows;
+    final private int reach; // (the number of cells a move can span along either axis)
+    final private int[] labels;
+
+    /**
+     * Labels the free space around the given zones.
+     *
+     * @param index the index of the zones.
+     * @throws IllegalArgumentException if the index is null.
+     */
+    public ReachabilityMap(NoFlyZoneIndex index) throws IllegalArgumentException
+    {
+        if (index == null)
+            throw new IllegalArgumentException("index cannot be null");
+
+        final double area = (index.getMaxLng() - index.getMinLng()) * (index.getMaxLat() - index.getMinLat());
+        final OccupancyRaster raster =
+                new OccupancyRaster(index, Math.max(RESOLUTION, Math.sqrt(area / MAX_CELLS)));
+
+        this.minLng = raster.getMinLng();
+        this.minLat = raster.getMinLat();
+        this.cellSize = raster.getResolution();
+        this.columns = raster.getColumns();
+        this.rows = raster.getRows();
+        this.reach = (int) Math.ceil(SystemConstants.DRONE_MOVE_DISTANCE / cellSize);
+        this.labels = new int[columns * rows];
+
+        label(index, raster);
+    }
+
+    /**
+     * @param lng the longitude of the position.
+     * @param lat the latitude of the position.
+     * @return the label of the component the position falls in; {@link #EXTERIOR} outside the zones' bounds, or
+     * {@link #BLOCKED} if the position's cell is fully blocked.
+     */
+    public int labelOf(double lng, double lat)
+    {
+        return labelAt(columnOf(lng), rowOf(lat));
+    }
+
+    /**
+     * Checks if a route may lead from the given position to within the given distance of the destination.
+     *
+     * @param fromLng  the longitude of the starting position.
+     * @param fromLat  the latitude of the starting position.
+     * @param toLng    the longitude of the destination.
+     * @param toLat    the latitude of the destination.
+     * @param distance the distance from the destination at which a route ends.
+     * @return false if no route can lead from the starting position to within the distance of the destination; true
+     * if one may.
+     */
+    public boolean isReachable(double fromLng, double fromLat, double toLng, double toLat, double distance)
+    {
+        final int label = labelOf(fromLng, fromLat);
+        if (label == BLOCKED) return false;
+
+        // Any cell within the distance of the destination may hold the route's last position.
+        final int span = (int) Math.ceil(distance / cellSize);
+        final long toColumn = columnOf(toLng);
+        final long toRow = rowOf(toLat);
+        for (long row = toRow - span; row <= toRow + span; row++)
+        {
+            for (long column = toColumn - span; column <= toColumn + span; column++)
+            {
+                if (labelAt(column, row) == label) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Labels the cells component by component (breadth-first), starting with the exterior one.
+     */
+    private void label(NoFlyZoneIndex index, OccupancyRaster raster)
+    {
+        final int[] queue = new int[labels.length];
+        int head = 0;
+        int tail = 0;
+
+        // [1] Blocked cells, and the cells a single move away from the outside (the exterior component's seeds).
+        final int unlabelled = Integer.MIN_VALUE;
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                final int cell = row * columns + column;
+                final byte state = raster.classifyCell(column, row);
+                if (state == OccupancyRaster.BLOCKED
+                        || state == OccupancyRaster.BOUNDARY && isCovered(index, column, row))
+                {
+                    labels[cell] = BLOCKED;
+                } else if (column < reach || row < reach || column >= columns - reach || row >= rows - reach)
+                {
+                    labels[cell] = EXTERIOR;
+                    queue[tail++] = cell;
+                } else
+                {
+                    labels[cell] = unlabelled;
+                }
+            }
+        }
+
+        // [2] Flood every component in turn.
+        int next = EXTERIOR;
+        int seed = 0;
+        while (true)
+        {
+            while (head < tail)
+            {
+                final int cell = queue[head++];
+                final int column = cell % columns;
+                final int row = cell / columns;
+                for (int r = Math.max(0, row - reach); r <= Math.min(rows - 1, row + reach); r++)
+                {
+                    for (int c = Math.max(0, column - reach); c <= Math.min(columns - 1, column + reach); c++)
+                    {
+                        final int neighbour = r * columns + c;
+                        if (labels[neighbour] != unlabelled) continue;
+
+                        labels[neighbour] = labels[cell];
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+
+            while (seed < labels.length && labels[seed] != unlabelled) seed++;
+            if (seed == labels.length) return;
+
+            labels[seed] = ++next;
+            queue[tail++] = seed;
+        }
+    }
+
+    /**
+     * Checks if a boundary cell lies entirely within a single zone, i.e. it is only crossed by the edges of others.
+     * <p>
+     * (i) Zones overlapping one another mark the cells along each other's edges as boundary cells, through which a wall
+     * made of several zones would otherwise appear passable. Cells along the seam of merely adjoining zones remain
+     * passable (the map over-approximates).
+     */
+    private boolean isCovered(NoFlyZoneIndex index, int column, int row)
+    {
+        final double cellLng = minLng + column * cellSize;
+        final double cellLat = minLat + row * cellSize;
+        for (int zone = 0; zone < index.size(); zone++)
+        {
+            if (!index.isInZone(zone, cellLng + cellSize / 2, cellLat + cellSize / 2)) continue;
+
+            boolean crossed = false;
+            final int start = index.getVertexStart(zone);
+            final int end = index.getVertexEnd(zone);
+            for (int i = start; i < end && !crossed; i++)
+            {
+                final int next = i + 1 == end ? start : i + 1;
+                crossed = Geometry.segmentIntersectsBox(
+                        index.getX(i), index.getY(i), index.getX(next), index.getY(next),
+                        cellLng - EDGE_PADDING, cellLat - EDGE_PADDING,
+                        cellLng + cellSize + EDGE_PADDING, cellLat + cellSize + EDGE_PADDING);
+            }
+            if (!crossed) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the label of the given cell; {@link #EXTERIOR} if it lies outside the map.
+     */
+    private int labelAt(long column, long row)
+    {
+        if (column < 0 || row < 0 || column >= columns || row >= rows) return EXTERIOR;
+        return labels[(int) row * columns + (int) column];
+    }
+
+    private long columnOf(double lng)
+    {
+        return (long) Math.floor((lng - minLng) / cellSize);
+    }
+
+    private long rowOf(double lat)
+    {
+        return (long) Math.floor((lat - minLat) / cellSize);
+    }
+}
@@ -0,0 +1,326 @@
+package uk.ac.ed.inf.lib.airspace;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the visibility graph of a set of no-fly zones, i.e. the graph connecting every pair of (inflated) zone
+ * corners that can see each other along a straight line.
+ * <p>
+ * Any-angle shortest paths around polygonal obstacles only ever bend at the obstacles' convex corners; each such
+ * corner is therefore pushed outwards by a given inflation distance (mitred, such that the node keeps that distance to
+ * both adjacent edges), and two nodes are connected if the segment between them keeps a given clearance to every zone
+ * edge. Paths between arbitrary positions are found by connecting them to the graph on demand, see
+ * {@link #shortestPath(LngLat, LngLat)}.
+ * <p>
+ * The graph is immutable once built, and can be shared between threads.
+ */
+public class VisibilityGraph
+{
+    // (i) Bounds the offset of very sharp corners, relative to the inflation distance.
+    private static final double MAX_MITRE = 4;
+
+    final private NoFlyZoneIndex index;
+    final private double clearance;
+
+    // [zones] bounding boxes, expanded by the clearance.
+    final private double[] minXs;
+    final private double[] minYs;
+    final private double[] maxXs;
+    final private double[] maxYs;
+
+    // [nodes] inflated corners.
+    final private double[] nodeXs;
+    final private double[] nodeYs;
+    final private double[][] distances; // (the length of each visible edge; infinite if not visible)
+
+    /**
+     * Constructs the visibility graph of the given zones.
+     *
+     * @param index     the zones' index.
+     * @param inflation the distance by which corners are pushed away from their zone.
+     * @param clearance the minimum distance between an edge of the graph and any zone edge; expected to be smaller than
+     *                  the inflation, as neighbouring corners would not see each other otherwise.
+     * @throws IllegalArgumentException if the index is null, or the distances are negative.
+     */
+    public VisibilityGraph(NoFlyZoneIndex index, double inflation, double clearance) throws IllegalArgumentException
+    {
+        if (index == null)
+            throw new IllegalArgumentException("index cannot be null");
+        else if (!(inflation >= 0) || !(clearance >= 0))
+            throw new IllegalArgumentException("inflation and clearance cannot be negative");
+
+        this.index = index;
+        this.clearance = clearance;
+
+        final int zones = index.size();
+        this.minXs = new double[zones];
+        this.minYs = new double[zones];
+        this.maxXs = new double[zones];
+        this.maxYs = new double[zones];
+        for (int zone = 0; zone < zones; zone++) computeBounds(zone);
+
+        // [1] Inflate every convex corner; corners ending up within (another) zone are dropped.
+        final List<double[]> nodes = new ArrayList<>();
+        for (int zone = 0; zone < zones; zone++) inflateZone(zone, inflation, nodes);
+
+        this.nodeXs = new double[nodes.size()];
+        this.nodeYs = new double[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            nodeXs[i] = nodes.get(i)[0];
+            nodeYs[i] = nodes.get(i)[1];
+        }
+
+        // [2] Connect every pair of mutually visible nodes.
+        this.distances = new double[nodes.size()][nodes.size()];
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            Arrays.fill(distances[i], Double.POSITIVE_INFINITY);
+            distances[i][i] = 0;
+        }
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            for (int j = i + 1; j < nodes.size(); j++)
+            {
+                if (!isVisible(nodeXs[i], nodeYs[i], nodeXs[j], nodeYs[j])) continue;
+
+                final double distance = Math.hypot(nodeXs[j] - nodeXs[i], nodeYs[j] - nodeYs[i]);
+                distances[i][j] = distance;
+                distances[j][i] = distance;
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes (inflated corners) in the graph.
+     */
+    public int size()
+    {
+        return nodeXs.length;
+    }
+
+    /**
+     * @return the position of the given node.
+     */
+    public LngLat getNode(int node)
+    {
+        return new LngLat(nodeXs[node], nodeYs[node]);
+    }
+
+    /**
+     * Checks if the segment between the two positions keeps the graph's clearance to every zone edge.
+     * <p>
+     * (i) A segment lying entirely within a zone does not cross any edge; the endpoints are expected to lie outside the
+     * zones.
+     *
+     * @return true if the segment is clear, false otherwise.
+     */
+    public boolean isVisible(double ax, double ay, double bx, double by)
+    {
+        for (int zone = 0; zone < index.size(); zone++)
+        {
+            if (!Geometry.segmentIntersectsBox(ax, ay, bx, by, minXs[zone], minYs[zone], maxXs[zone], maxYs[zone]))
+                continue;
+
+            final int start = index.getVertexStart(zone);
+            final int end = index.getVertexEnd(zone);
+            for (int i = start, j = end - 1; i < end; j = i++)
+            {
+                final double distance = Geometry.segmentDistance(ax, ay, bx, by,
+                        index.getX(j), index.getY(j), index.getX(i), index.getY(i));
+                if (distance < clearance) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the shortest path between the two positions along the graph (Dijkstra).
+     *
+     * @param from the starting position.
+     * @param to   the ending position.
+     * @return the path's waypoints, starting with `from` and ending with `to`; null if either position lies within a
+     * zone, or the positions are not connected.
+     */
+    public List<LngLat> shortestPath(LngLat from, LngLat to)
+    {
+        if (index.contains(from) || index.contains(to)) return null;
+
+        // (i) The endpoints are added as two transient nodes: `from` → n, `to` → n + 1.
+        final int n = size();
+        final int source = n;
+        final int target = n + 1;
+        final double[] fromDistances = new double[n + 2];
+        final double[] toDistances = new double[n + 2];
+        Arrays.fill(fromDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(toDistances, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++)
+        {
+            if (isVisible(from.lng(), from.lat(), nodeXs[i], nodeYs[i]))
+                fromDistances[i] = Math.hypot(nodeXs[i] - from.lng(), nodeYs[i] - from.lat());
+            if (isVisible(to.lng(), to.lat(), nodeXs[i], nodeYs[i]))
+                toDistances[i] = Math.hypot(nodeXs[i] - to.lng(), nodeYs[i] - to.lat());
+        }
+        if (isVisible(from.lng(), from.lat(), to.lng(), to.lat()))
+            fromDistances[target] = Math.hypot(to.lng() - from.lng(), to.lat() - from.lat());
+
+        // (i) The graph holds a few dozen nodes at most; a linear scan for the closest node beats a heap.
+        final double[] scores = new double[n + 2];
+        final int[] parents = new int[n + 2];
+        final boolean[] closed = new boolean[n + 2];
+        Arrays.fill(scores, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        scores[source] = 0;
+
+        while (true)
+        {
+            int current = -1;
+            for (int i = 0; i < n + 2; i++)
+                if (!closed[i] && scores[i] < Double.POSITIVE_INFINITY && (current < 0 || scores[i] < scores[current]))
+                    current = i;
+
+            if (current < 0) return null; // (not connected)
+            if (current == target) break;
+            closed[current] = true;
+
+            for (int next = 0; next < n + 2; next++)
+            {
+                if (closed[next]) continue;
+
+                final double distance;
+                if (current == source) distance = fromDistances[next];
+                else if (next == target) distance = toDistances[current];
+                else if (next == source) continue;
+                else distance = distances[current][next];
+
+                if (scores[current] + distance < scores[next])
+                {
+                    scores[next] = scores[current] + distance;
+                    parents[next] = current;
+                }
+            }
+        }
+
+        final List<LngLat> path = new ArrayList<>();
+        for (int node = target; node >= 0; node = parents[node])
+        {
+            if (node == source) path.add(from);
+            else if (node == target) path.add(to);
+            else path.add(getNode(node));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Adds the inflated convex corners of the given zone to the nodes.
+     */
+    private void inflateZone(int zone, double inflation, List<double[]> nodes)
+    {
+        final int start = index.getVertexStart(zone);
+        final int end = index.getVertexEnd(zone);
+        final int count = end - start;
+
+        // The orientation of the zone (positive → counter-clockwise) determines which side of an edge is outside.
+        double area = 0;
+        for (int i = start, j = end - 1; i < end; j = i++)
+            area += index.getX(j) * index.getY(i) - index.getX(i) * index.getY(j);
+        final double orientation = Math.signum(area);
+        if (orientation == 0) return;
+
+        for (int k = 0; k < count; k++)
+        {
+            final int vertex = start + k;
+            final int previous = previousDistinct(start, count, k);
+            final int next = nextDistinct(start, count, k);
+            if (previous == vertex || next == vertex) continue;
+
+            final double x = index.getX(vertex);
+            final double y = index.getY(vertex);
+
+            // Outward unit normals of the incoming and outgoing edges.
+            final double[] n1 = outwardNormal(index.getX(previous), index.getY(previous), x, y, orientation);
+            final double[] n2 = outwardNormal(x, y, index.getX(next), index.getY(next), orientation);
+
+            // (i) Only convex corners can be part of a shortest path.
+            final double turn = (x - index.getX(previous)) * (index.getY(next) - y)
+                    - (y - index.getY(previous)) * (index.getX(next) - x);
+            if (turn * orientation <= 0) continue;
+
+            // Mitre: the offset keeping the inflation distance to both edges, bounded for sharp corners.
+            final double dot = n1[0] * n2[0] + n1[1] * n2[1];
+            double mx = (n1[0] + n2[0]) / (1 + dot);
+            double my = (n1[1] + n2[1]) / (1 + dot);
+            final double length = Math.hypot(mx, my);
+            if (length > MAX_MITRE)
+            {
+                mx *= MAX_MITRE / length;
+                my *= MAX_MITRE / length;
+            }
+
+            final double nx = x + mx * inflation;
+            final double ny = y + my * inflation;
+            if (!index.contains(nx, ny)) nodes.add(new double[]{nx, ny});
+        }
+    }
+
+    /**
+     * @return the vertex preceding the k-th vertex of a zone, skipping duplicates (e.g. a repeated closing vertex).
+     */
+    private int previousDistinct(int start, int count, int k)
+    {
+        final int vertex = start + k;
+        for (int step = 1; step < count; step++)
+        {
+            final int candidate = start + Math.floorMod(k - step, count);
+            if (index.getX(candidate) != index.getX(vertex) || index.getY(candidate) != index.getY(vertex))
+                return candidate;
+        }
+        return vertex;
+    }
+
+    /**
+     * @return the vertex following the k-th vertex of a zone, skipping duplicates.
+     */
+    private int nextDistinct(int start, int count, int k)
+    {
+        final int vertex = start + k;
+        for (int step = 1; step < count; step++)
+        {
+            final int candidate = start + (k + step) % count;
+            if (index.getX(candidate) != index.getX(vertex) || index.getY(candidate) != index.getY(vertex))
+                return candidate;
+        }
+        return vertex;
+    }
+
+    /**
+     * @return the outward unit normal of the edge AB, given the orientation of its zone.
+     */
+    private static double[] outwardNormal(double ax, double ay, double bx, double by, double orientation)
+    {
+        final double length = Math.hypot(bx - ax, by - ay);
+        // (i) The right-hand normal points outwards of a counter-clockwise polygon.
+        return new double[]{orientation * (by - ay) / length, -orientation * (bx - ax) / length};
+    }
+
+    private void computeBounds(int zone)
+    {
+        minXs[zone] = Double.POSITIVE_INFINITY;
+        minYs[zone] = Double.POSITIVE_INFINITY;
+        maxXs[zone] = Double.NEGATIVE_INFINITY;
+        maxYs[zone] = Double.NEGATIVE_INFINITY;
+        for (int vertex = index.getVertexStart(zone); vertex < index.getVertexEnd(zone); vertex++)
+        {
+            minXs[zone] = Math.min(minXs[zone], index.getX(vertex) - clearance);
+            minYs[zone] = Math.min(minYs[zone], index.getY(vertex) - clearance);
+            maxXs[zone] = Math.max(maxXs[zone], index.getX(vertex) + clearance);
+            maxYs[zone] = Math.max(maxYs[zone], index.getY(vertex) + clearance);
+        }
+    }
+}
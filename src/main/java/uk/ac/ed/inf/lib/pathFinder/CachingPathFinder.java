@@ -0,0 +1,375 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+import uk.ac.ed.inf.lib.routeStore.IRouteStore;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents a {@link IPathFinder} which remembers the routes found by another.
+ * <p>
+ * Routes are cached under their endpoints and a fingerprint of the no-fly zones (and central area, if set) they were
+ * found with (see {@link NoFlyZoneIndex#fingerprintOf(NamedRegion[])}) and of the delegate's configuration (see
+ * {@link IPathFinder#getConfigurationFingerprint()}), and the least recently used routes are evicted once the cache is
+ * full. On a miss:
+ * <ul>
+ *     <li>the reverse route (to → from) is looked up, and replayed backwards if it remains valid, see
+ *     {@link Routes#reverse(List, NoFlyZoneIndex, boolean)}; under the central area rule, the reversed route must also
+ *     keep to the central area, see {@link Routes#keepsToCentralArea(List, CompiledAirspace)};</li>
+ *     <li>the route is loaded from the persistent store, if one is set, see {@link IRouteStore};</li>
+ *     <li>concurrent requests for the same route are merged, such that only one search is performed and its result is
+ *     shared between the callers.</li>
+ * </ul>
+ * Routes found by the delegate are added to the persistent store, if one is set. Routes not guaranteed to be the
+ * shortest (i.e. cut short by a time budget, or found by a heuristic delegate; see
+ * {@link Result#getSuboptimalityBound()}) are returned but neither cached nor stored, such that a later search with a
+ * larger budget may improve them, and the cache only ever holds shortest routes.
+ * Every call returns its own {@link IPathFinder.Result}, as callers are expected to label it with their order number;
+ * only the call which performed a search reports its work, see {@link Result#getStats()}.
+ */
+public class CachingPathFinder implements IPathFinder
+{
+    /**
+     * The number of routes held by default.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    final private IPathFinder delegate;
+    final private Map<Key, Entry> cache; // (access-ordered; guarded by itself)
+    final private Map<Key, CompletableFuture<Entry>> inFlight;
+
+    private volatile CompiledAirspace airspace;
+    private volatile CompiledAirspace centralArea; // (null unless the central area rule is set)
+    private volatile boolean reverseRoutes;
+    private volatile IRouteStore routeStore; // (optional; null unless set)
+
+    /**
+     * Constructs a cache of {@value DEFAULT_CAPACITY} routes.
+     *
+     * @param delegate the path finder to which searches are delegated.
+     */
+    public CachingPathFinder(IPathFinder delegate)
+    {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a cache.
+     *
+     * @param delegate the path finder to which searches are delegated.
+     * @param capacity the maximum number of routes held.
+     * @throws IllegalArgumentException if the delegate is null, or the capacity is not positive.
+     */
+    public CachingPathFinder(IPathFinder delegate, int capacity) throws IllegalArgumentException
+    {
+        if (delegate == null)
+            throw new IllegalArgumentException("delegate cannot be null");
+        else if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        this.delegate = delegate;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+        this.inFlight = new ConcurrentHashMap<>();
+        this.airspace = CompiledAirspace.EMPTY;
+        this.reverseRoutes = true;
+    }
+
+    /**
+     * Sets the no-fly zones on both the cache and its delegate.
+     * <p>
+     * (i) Routes cached under previous zones are not served anymore, and eventually evicted.
+     *
+     * @param noFlyZones the no-fly zones; null if there are none.
+     */
+    public void setNoFlyZones(NamedRegion[] noFlyZones)
+    {
+        delegate.setNoFlyZones(noFlyZones);
+        this.airspace = CompiledAirspace.compile(noFlyZones, false);
+    }
+
+    /**
+     * Sets the central area on both the cache and its delegate, see {@link IPathFinder#setCentralArea(NamedRegion)}.
+     * <p>
+     * (i) Routes cached under a different central area (or none) are not served anymore, and eventually evicted.
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    @Override
+    public void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException
+    {
+        delegate.setCentralArea(centralArea);
+        this.centralArea = centralArea == null ? null : CompiledAirspace.compile(new NamedRegion[]{centralArea}, true);
+    }
+
+    /**
+     * Enables|disables the segment check of every move on the delegate, see
+     * {@link IPathFinder#setSegmentCheck(boolean)}.
+     * <p>
+     * (i) Routes found under the other mode are not served anymore, see {@link #getConfigurationFingerprint()}.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     */
+    @Override
+    public void setSegmentCheck(boolean enabled)
+    {
+        delegate.setSegmentCheck(enabled);
+    }
+
+    @Override
+    public boolean getSegmentCheck()
+    {
+        return delegate.getSegmentCheck();
+    }
+
+    /**
+     * @return the fingerprint of the delegate's configuration, see {@link IPathFinder#getConfigurationFingerprint()}.
+     */
+    @Override
+    public long getConfigurationFingerprint()
+    {
+        return delegate.getConfigurationFingerprint();
+    }
+
+    /**
+     * Enables|disables serving a route by reversing the cached route in the opposite direction (enabled by default).
+     *
+     * @param enabled true to reverse routes, false otherwise.
+     */
+    public void setReverseRoutes(boolean enabled)
+    {
+        this.reverseRoutes = enabled;
+    }
+
+    /**
+     * Sets the persistent store consulted before delegating a search, and to which found routes are added.
+     *
+     * @param routeStore the store; null to disable persistence.
+     */
+    public void setRouteStore(IRouteStore routeStore)
+    {
+        this.routeStore = routeStore;
+    }
+
+    /**
+     * @return the number of routes currently held.
+     */
+    public int size()
+    {
+        synchronized (cache)
+        {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Removes every route held.
+     */
+    public void clear()
+    {
+        synchronized (cache)
+        {
+            cache.clear();
+        }
+    }
+
+    public Result findRoute(LngLat fromPos, LngLat toPos)
+    {
+        return findRoute(fromPos, toPos, null);
+    }
+
+    /**
+     * Performs a path finding operation, passing the given time budget on to the delegate on a miss.
+     */
+    @Override
+    public Result findRoute(LngLat fromPos, LngLat toPos, Duration budget)
+    {
+        if (fromPos == null || toPos == null)
+            throw new IllegalArgumentException("positions cannot be null");
+        else if (fromPos.equals(toPos))
+            throw new IllegalArgumentException("positions cannot be equal");
+
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        final Result result = new Result();
+
+        // (i) The airspaces are read once, such that the route is cached under the zones it was found with.
+        final CompiledAirspace airspace = this.airspace;
+        final CompiledAirspace centralArea = this.centralArea;
+        long fingerprint = airspace.getFingerprint();
+        if (centralArea != null) fingerprint = 31 * fingerprint + centralArea.getFingerprint();
+        fingerprint = 31 * fingerprint + delegate.getConfigurationFingerprint(); // (e.g. a different planner or mode)
+        final Key key = new Key(fromPos, toPos, fingerprint);
+
+        Entry entry = get(key);
+        if (entry == null && reverseRoutes) entry = reverse(key, airspace, centralArea);
+        if (entry == null) entry = search(key, budget, result);
+
+        result.setOK(entry.ok());
+        result.setRoute(entry.route());
+        result.setSuboptimalityBound(entry.suboptimalityBound());
+        result.setFailureReason(entry.failureReason());
+        return counter.finish(result);
+    }
+
+    /**
+     * Serves the given key by reversing the route cached in the opposite direction, if any.
+     * <p>
+     * (i) The reversed moves are shifted from the original ones; if the delegate checks the segment of every move, so
+     * are they (see {@link IPathFinder#setSegmentCheck(boolean)}).
+     *
+     * @return the reversed entry, or null if there is no valid reverse route.
+     */
+    private Entry reverse(Key key, CompiledAirspace airspace, CompiledAirspace centralArea)
+    {
+        final Entry opposite = get(new Key(key.to(), key.from(), key.fingerprint()));
+        if (opposite == null || !opposite.ok()) return null;
+
+        final List<INode.Direction> route =
+                Routes.reverse(opposite.route(), airspace.getIndex(), delegate.getSegmentCheck());
+        if (route == null || !Routes.keepsToCentralArea(route, centralArea)) return null;
+
+        final Entry entry = new Entry(true, freeze(route), opposite.suboptimalityBound(), null);
+        put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Serves the given key by delegating the search; concurrent searches for the same key are merged into one.
+     *
+     * @param result the result to be served; given the statistics of the delegate's search, if this call performs it.
+     * @return the entry.
+     * @throws RuntimeException if the search fails.
+     */
+    private Entry search(Key key, Duration budget, Result result) throws RuntimeException
+    {
+        final CompletableFuture<Entry> own = new CompletableFuture<>();
+        final CompletableFuture<Entry> pending = inFlight.putIfAbsent(key, own);
+        if (pending != null)
+        {
+            try
+            {
+                return pending.join();
+            } catch (CompletionException e)
+            {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+
+        try
+        {
+            // (i) The route may have been cached while this call was waiting to register.
+            Entry entry = get(key);
+            if (entry == null) entry = load(key);
+            if (entry == null)
+            {
+                final Result found = delegate.findRoute(key.from(), key.to(), budget);
+                entry = new Entry(found.getOk(), freeze(found.getRoute()), found.getSuboptimalityBound(),
+                        found.getFailureReason());
+                result.setStats(found.getStats());
+                if (entry.ok() && entry.suboptimalityBound() == 1) store(key, entry);
+            }
+            if (entry.suboptimalityBound() == 1) put(key, entry);
+
+            own.complete(entry);
+            return entry;
+        } catch (RuntimeException e)
+        {
+            own.completeExceptionally(e);
+            throw e;
+        } finally
+        {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * @return the entry loaded from the persistent store, or null if there is none.
+     */
+    private Entry load(Key key)
+    {
+        final IRouteStore routeStore = this.routeStore;
+        if (routeStore == null) return null;
+
+        try
+        {
+            final List<INode.Direction> route = routeStore.load(key.from(), key.to(), key.fingerprint());
+            return route == null ? null : new Entry(true, freeze(route), 1, null);
+        } catch (RuntimeException e)
+        {
+            return null; // (i) the store is an optimisation only; an unreadable route is searched for instead.
+        }
+    }
+
+    /**
+     * Adds the given entry to the persistent store, if one is set.
+     */
+    private void store(Key key, Entry entry)
+    {
+        final IRouteStore routeStore = this.routeStore;
+        if (routeStore == null) return;
+
+        try
+        {
+            routeStore.save(key.from(), key.to(), key.fingerprint(), entry.route());
+        } catch (RuntimeException e)
+        {
+            // (i) the store is an optimisation only; failing to persist a route does not fail the search.
+        }
+    }
+
+    /**
+     * @return an immutable copy of the given route; compacted if possible, see {@link CompactRoute}.
+     */
+    private static List<INode.Direction> freeze(List<INode.Direction> route)
+    {
+        final CompactRoute compactRoute = CompactRoute.of(route);
+        return compactRoute != null ? compactRoute : List.copyOf(route);
+    }
+
+    private Entry get(Key key)
+    {
+        synchronized (cache)
+        {
+            return cache.get(key);
+        }
+    }
+
+    private void put(Key key, Entry entry)
+    {
+        synchronized (cache)
+        {
+            cache.put(key, entry);
+        }
+    }
+
+    private record Key(LngLat from, LngLat to, long fingerprint)
+    {
+    }
+
+    /**
+     * @param route              the (immutable) directions; shared between every result served from the entry.
+     * @param suboptimalityBound the bound reported by the delegate, see {@link Result#getSuboptimalityBound()}.
+     * @param failureReason      the reason reported by the delegate, see {@link Result#getFailureReason()}.
+     */
+    private record Entry(boolean ok, List<INode.Direction> route, double suboptimalityBound,
+                         FailureReason failureReason)
+    {
+    }
+}
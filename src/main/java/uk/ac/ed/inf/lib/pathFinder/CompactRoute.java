@@ -0,0 +1,199 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents an immutable route held in compact form: its starting and ending positions, and the bearing of each move
+ * packed into 4 bits (two moves per byte).
+ * <p>
+ * The directions are only expanded when read, by replaying the moves on the {@link Lattice} of the starting position;
+ * as the path finders resolve their moves onto the same lattice, the expanded directions are identical to the ones
+ * compacted. The hovers at either end of the route are implied, as a route never hovers anywhere else.
+ * <p>
+ * (i) A route takes half a byte per move, rather than the ~70 bytes of a {@link INode.Direction} and its position.
+ * Iterating (or streaming) over the route expands each direction in constant time; {@link #get(int)} replays the
+ * moves up to the given index, and is therefore best avoided in a loop.
+ */
+public final class CompactRoute extends AbstractList<INode.Direction>
+{
+    private static final double HOVER_ANGLE = 999;
+
+    final private LngLat from;
+    final private LngLat to;
+    final private byte[] bearings; // (two per byte; the even moves in the low bits)
+    final private int moves;
+
+    private CompactRoute(LngLat from, LngLat to, byte[] bearings, int moves)
+    {
+        this.from = from;
+        this.to = to;
+        this.bearings = bearings;
+        this.moves = moves;
+    }
+
+    /**
+     * Compacts the given route.
+     *
+     * @param route the route, starting with a hover at its starting position, followed by one direction per move, and
+     *              ending with a hover at its destination.
+     * @return the compacted route, or null if the route cannot be compacted: it is malformed, or its moves do not lie
+     * on the lattice of its starting position.
+     */
+    public static CompactRoute of(List<INode.Direction> route)
+    {
+        if (route == null || route.size() < 2) return null;
+        else if (route instanceof CompactRoute compactRoute) return compactRoute;
+
+        final INode.Direction first = route.get(0);
+        final INode.Direction last = route.get(route.size() - 1);
+        if (first.angle() != HOVER_ANGLE || last.angle() != HOVER_ANGLE) return null;
+
+        final int moves = route.size() - 2;
+        final byte[] bearings = new byte[(moves + 1) / 2];
+        final Lattice lattice = new Lattice(first.position());
+        long key = Lattice.ORIGIN;
+
+        int move = 0;
+        for (INode.Direction direction : route.subList(1, route.size() - 1))
+        {
+            final int bearing = Lattice.bearingOf(direction.angle());
+            if (bearing < 0) return null;
+
+            key = Lattice.neighbour(key, bearing);
+            if (key == Lattice.NO_KEY || !lattice.toLngLat(key).equals(direction.position())) return null;
+
+            bearings[move / 2] |= (byte) (bearing << (move % 2 * 4));
+            move++;
+        }
+
+        return new CompactRoute(first.position(), last.position(), bearings, moves);
+    }
+
+    /**
+     * Creates a route from the bearings of its moves.
+     *
+     * @param from     the starting position.
+     * @param to       the ending position.
+     * @param bearings the index of the bearing of each move (0 to {@value Lattice#BEARINGS} exclusive).
+     * @return the route.
+     * @throws IllegalArgumentException if either position is null, any bearing is out of range, or the moves leave the
+     *                                  bounds of the lattice.
+     */
+    public static CompactRoute of(LngLat from, LngLat to, byte[] bearings) throws IllegalArgumentException
+    {
+        if (from == null || to == null || bearings == null)
+            throw new IllegalArgumentException("positions and bearings cannot be null");
+
+        final byte[] packed = new byte[(bearings.length + 1) / 2];
+        long key = Lattice.ORIGIN;
+        for (int move = 0; move < bearings.length; move++)
+        {
+            if (bearings[move] < 0 || bearings[move] >= Lattice.BEARINGS)
+                throw new IllegalArgumentException("bearings must be within [0, " + Lattice.BEARINGS + ")");
+
+            key = Lattice.neighbour(key, bearings[move]);
+            if (key == Lattice.NO_KEY)
+                throw new IllegalArgumentException("moves cannot leave the bounds of the lattice");
+
+            packed[move / 2] |= (byte) (bearings[move] << (move % 2 * 4));
+        }
+
+        return new CompactRoute(from, to, packed, bearings.length);
+    }
+
+    /**
+     * @return the number of moves (i.e. the number of directions, less the hovers at either end).
+     */
+    public int moves()
+    {
+        return moves;
+    }
+
+    /**
+     * @param move the index of the move (0 to {@link #moves()} exclusive).
+     * @return the index of the bearing of the given move.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public int bearingAt(int move) throws IndexOutOfBoundsException
+    {
+        if (move < 0 || move >= moves)
+            throw new IndexOutOfBoundsException("move " + move + " out of range [0, " + moves + ")");
+
+        return (bearings[move / 2] >> (move % 2 * 4)) & 0xF;
+    }
+
+    @Override
+    public int size()
+    {
+        return moves + 2;
+    }
+
+    @Override
+    public INode.Direction get(int index)
+    {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("index " + index + " out of range [0, " + size() + ")");
+
+        final Iterator<INode.Direction> iterator = iterator();
+        for (int i = 0; i < index; i++) iterator.next();
+        return iterator.next();
+    }
+
+    /**
+     * (i) Compares the directions in a single pass, rather than through {@link #get(int)}.
+     */
+    @Override
+    public boolean equals(Object o)
+    {
+        if (o == this) return true;
+        if (!(o instanceof List<?> other) || other.size() != size()) return false;
+
+        final Iterator<?> others = other.iterator();
+        for (INode.Direction direction : this)
+        {
+            if (!direction.equals(others.next())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return super.hashCode(); // (iterates once as well)
+    }
+
+    @Override
+    public Iterator<INode.Direction> iterator()
+    {
+        return new Iterator<>()
+        {
+            final private Lattice lattice = new Lattice(from);
+            private long key = Lattice.ORIGIN;
+            private int index = 0;
+
+            public boolean hasNext()
+            {
+                return index < size();
+            }
+
+            public INode.Direction next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final int current = index++;
+                if (current == 0) return new INode.Direction(from, current);
+                else if (current == moves + 1) return new INode.Direction(to, current);
+
+                final int bearing = bearingAt(current - 1);
+                key = Lattice.neighbour(key, bearing);
+                return new INode.Direction(lattice.toLngLat(key), Lattice.angleOf(bearing), current);
+            }
+        };
+    }
+}
@@ -0,0 +1,412 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a {@link IPathFinder} serving the routes from|to a single source position (e.g. Appleton Tower) from a
+ * precomputed distance field.
+ * <p>
+ * Whenever the no-fly zones are set, the drone's moves are flooded breadth-first from the source over a square domain
+ * of {@link #getRadius()} moves around it. The domain is divided into cells of {@value #CELL_SIZE} degrees, each of
+ * which keeps the first position to reach it, along with its move count and the bearing it was reached in. A route from
+ * the source is then extracted by following the bearings back from a cell close to the destination, in time
+ * proportional to the route's length; a route towards the source is the reverse of the route from it, see
+ * {@link Routes#reverse(List, uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex)}.
+ * <p>
+ * (i) The move lattice itself cannot be flooded: positions reached through distinct orderings of moves rarely coincide,
+ * such that their number grows far faster than the area they cover. Keeping a single position per cell bounds the
+ * field, at the cost of routes being typically within a move or two of the shortest; they are reported with their
+ * bound accordingly, see {@link Result#getSuboptimalityBound()}.
+ * <p>
+ * Queries not involving the source, or whose other endpoint lies outside the field (or was not reached by the flood),
+ * are delegated to the fallback path finder.
+ */
+public class DistanceFieldPathFinder implements IPathFinder
+{
+    /**
+     * The default half-width of the domain (in moves).
+     */
+    public static final int DEFAULT_RADIUS = 256;
+
+    /**
+     * The length of a cell's side; half a move, such that the position kept by a cell is close to any position within
+     * it.
+     */
+    public static final double CELL_SIZE = SystemConstants.DRONE_MOVE_DISTANCE / 2;
+
+    private static final LngLatHandler lngLatHandler = new LngLatHandler();
+
+    final private LngLat source;
+    final private int radius;
+    final private IPathFinder fallback;
+
+    // (i) Replaced as a whole whenever the zones are set; see CompiledAirspace. Flooded on first use if no zones are.
+    private volatile Field field;
+    private volatile CompiledAirspace centralArea; // (null unless the central area rule is set)
+    private volatile boolean checkSegments;
+
+    /**
+     * Constructs a path finder over a domain of {@value DEFAULT_RADIUS} moves, falling back to {@link PathFinder}.
+     *
+     * @param source the position every route served from the field starts or ends at.
+     */
+    public DistanceFieldPathFinder(LngLat source)
+    {
+        this(source, DEFAULT_RADIUS, new PathFinder());
+    }
+
+    /**
+     * Constructs a path finder.
+     *
+     * @param source   the position every route served from the field starts or ends at.
+     * @param radius   the half-width of the domain (in moves).
+     * @param fallback the path finder to which other searches are delegated.
+     * @throws IllegalArgumentException if the source or fallback is null, or the radius is not positive (or too large
+     *                                  for the lattice).
+     */
+    public DistanceFieldPathFinder(LngLat source, int radius, IPathFinder fallback) throws IllegalArgumentException
+    {
+        if (source == null || fallback == null)
+            throw new IllegalArgumentException("source and fallback cannot be null");
+        else if (radius <= 0 || radius > Lattice.MAX_OFFSET / Lattice.STEP_RESOLUTION / 2)
+            throw new IllegalArgumentException("radius must be positive, and within the lattice's bounds");
+
+        this.source = source;
+        this.radius = radius;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Sets the no-fly zones to avoid, and floods the distance field anew.
+     *
+     * @param noFlyZones the no-fly zones; null if there are none.
+     * @throws IllegalArgumentException if any zone is not a closed polygon (min. 3 vertices).
+     */
+    public synchronized void setNoFlyZones(NamedRegion[] noFlyZones) throws IllegalArgumentException
+    {
+        fallback.setNoFlyZones(noFlyZones);
+        this.field = new Field(CompiledAirspace.compile(noFlyZones, true), checkSegments);
+    }
+
+    /**
+     * Enables|disables the segment check of every move on both this path finder and its fallback (disabled by
+     * default), and floods the distance field anew; see {@link PathFinder#setSegmentCheck(boolean)}.
+     * <p>
+     * (i) The flood does not claim cells through moves crossing a zone's edge, and served routes (reversed ones
+     * included) are checked again as they are replayed.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     */
+    @Override
+    public synchronized void setSegmentCheck(boolean enabled)
+    {
+        fallback.setSegmentCheck(enabled);
+        this.checkSegments = enabled;
+        if (field != null) this.field = new Field(field.airspace, enabled);
+    }
+
+    @Override
+    public boolean getSegmentCheck()
+    {
+        return checkSegments;
+    }
+
+    /**
+     * Sets the central area on both this path finder and its fallback, see
+     * {@link IPathFinder#setCentralArea(NamedRegion)}.
+     * <p>
+     * (i) Routes are found without regard to the rule, and checked against it once found; those breaking it are
+     * searched for by the fallback instead.
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    @Override
+    public void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException
+    {
+        fallback.setCentralArea(centralArea);
+        this.centralArea = centralArea == null ? null : CompiledAirspace.compile(new NamedRegion[]{centralArea}, true);
+    }
+
+    /**
+     * @return the position every route served from the field starts or ends at.
+     */
+    public LngLat getSource()
+    {
+        return source;
+    }
+
+    /**
+     * @return the half-width of the domain (in moves).
+     */
+    public int getRadius()
+    {
+        return radius;
+    }
+
+    /**
+     * @param position the position to look up.
+     * @return the number of moves from the source to the cell of the given position, or -1 if the cell was not reached.
+     */
+    public int getMoves(LngLat position)
+    {
+        final Field field = field();
+        final int cell = field.cellOf(position.lng(), position.lat());
+        return cell < 0 || field.keys[cell] == Lattice.NO_KEY ? -1 : field.moves[cell];
+    }
+
+    /**
+     * @return a fingerprint of the path finder's class, source, radius, segment check and fallback; see
+     * {@link IPathFinder#getConfigurationFingerprint()}.
+     */
+    @Override
+    public long getConfigurationFingerprint()
+    {
+        long fingerprint = IPathFinder.super.getConfigurationFingerprint();
+        fingerprint = 31 * fingerprint + Double.hashCode(source.lng());
+        fingerprint = 31 * fingerprint + Double.hashCode(source.lat());
+        fingerprint = 31 * fingerprint + radius;
+        fingerprint = 31 * fingerprint + Boolean.hashCode(checkSegments);
+        return 31 * fingerprint + fallback.getConfigurationFingerprint();
+    }
+
+    public Result findRoute(LngLat fromPos, LngLat toPos)
+    {
+        if (fromPos == null || toPos == null)
+            throw new IllegalArgumentException("positions cannot be null");
+        else if (fromPos.equals(toPos))
+            throw new IllegalArgumentException("positions cannot be equal");
+
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        final Field field = field();
+        List<INode.Direction> route = null;
+        try
+        {
+            if (fromPos.equals(source)) route = field.route(toPos, false);
+            else if (toPos.equals(source)) route = field.route(fromPos, true);
+        } catch (Exception e)
+        {
+            final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
+            final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
+            throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        }
+
+        if (route == null || !Routes.keepsToCentralArea(route, centralArea)) // (see setCentralArea)
+            return counter.finish(fallback.findRoute(fromPos, toPos));
+
+        final Result result = new Result();
+        result.setOK(true);
+        result.setRoute(route);
+        result.setSuboptimalityBound(Routes.suboptimalityBound(route));
+        return counter.finish(result);
+    }
+
+    /**
+     * @return the current field; flooded without zones if none were set.
+     */
+    private Field field()
+    {
+        final Field field = this.field;
+        if (field != null) return field;
+
+        synchronized (this)
+        {
+            if (this.field == null) this.field = new Field(CompiledAirspace.EMPTY, checkSegments);
+            return this.field;
+        }
+    }
+
+    /**
+     * Represents the distance field flooded from the source through a given airspace.
+     */
+    private final class Field
+    {
+        final private CompiledAirspace airspace;
+        final private boolean checkSegments;
+        final private Lattice lattice;
+        final private double minLng;
+        final private double minLat;
+        final private int width;
+
+        // [cells] the position kept (NO_KEY → not reached), its move count, and the bearing it was reached in.
+        final private long[] keys;
+        final private short[] moves;
+        final private byte[] bearings;
+
+        Field(CompiledAirspace airspace, boolean checkSegments)
+        {
+            this.airspace = airspace;
+            this.checkSegments = checkSegments;
+            this.lattice = new Lattice(source);
+
+            // (i) The source lies at the centre of the middle cell.
+            this.width = 4 * radius + 1;
+            this.minLng = source.lng() - width * CELL_SIZE / 2;
+            this.minLat = source.lat() - width * CELL_SIZE / 2;
+
+            final int cells = width * width;
+            this.keys = new long[cells];
+            this.moves = new short[cells];
+            this.bearings = new byte[cells];
+            Arrays.fill(keys, Lattice.NO_KEY);
+
+            flood();
+        }
+
+        /**
+         * Floods the domain breadth-first from the source; every cell is claimed by the first position to reach it,
+         * which is therefore one of the fewest moves away.
+         */
+        private void flood()
+        {
+            final int[] queue = new int[keys.length]; // (every cell is queued at most once)
+            int head = 0;
+            int tail = 0;
+
+            final int start = cellOf(source.lng(), source.lat());
+            keys[start] = Lattice.ORIGIN;
+            bearings[start] = NodeStore.NO_BEARING;
+            queue[tail++] = start;
+
+            while (head < tail)
+            {
+                final int cell = queue[head++];
+                final long key = keys[cell];
+                for (int bearing = 0; bearing < Lattice.BEARINGS; bearing++)
+                {
+                    final long nextKey = Lattice.neighbour(key, bearing);
+                    if (nextKey == Lattice.NO_KEY) continue;
+
+                    final double lng = lattice.lng(nextKey);
+                    final double lat = lattice.lat(nextKey);
+                    final int nextCell = cellOf(lng, lat);
+                    if (nextCell < 0) continue;
+
+                    // (i) Among the positions reaching a cell in the same number of moves, the one closest to the
+                    //     cell's centre is kept, such that the kept positions do not drift away from the cells.
+                    final long kept = keys[nextCell];
+                    final boolean reached = kept != Lattice.NO_KEY;
+                    if (reached && (moves[nextCell] <= moves[cell] ||
+                            offCentre(nextCell, lng, lat) >= offCentre(nextCell, lattice.lng(kept), lattice.lat(kept))))
+                        continue;
+                    if (airspace.contains(lng, lat)) continue;
+                    if (checkSegments && airspace.crosses(lattice.lng(key), lattice.lat(key), lng, lat)) continue;
+
+                    keys[nextCell] = nextKey;
+                    moves[nextCell] = (short) (moves[cell] + 1);
+                    bearings[nextCell] = (byte) bearing;
+                    if (!reached) queue[tail++] = nextCell;
+                }
+            }
+        }
+
+        /**
+         * Extracts the route between the source and the given position.
+         * <p>
+         * The cells close to the position are tried in order of their move count. A reversed route starts at the exact
+         * position rather than the cell's, which shifts every move; the next cell is tried should the shifted route
+         * enter a no-fly zone.
+         *
+         * @param position the position the route ends at (or starts at, if reversed).
+         * @param reversed true for the route from the position to the source, false for the route from the source.
+         * @return the route, or null if no reached cell close to the position leads to a valid route.
+         */
+        List<INode.Direction> route(LngLat position, boolean reversed)
+        {
+            // (i) The closeness distance spans two cells either side.
+            final int column = (int) Math.floor((position.lng() - minLng) / CELL_SIZE);
+            final int row = (int) Math.floor((position.lat() - minLat) / CELL_SIZE);
+            final int span = (int) Math.ceil(SystemConstants.DRONE_IS_CLOSE_DISTANCE / CELL_SIZE);
+
+            final List<Integer> candidates = new ArrayList<>();
+            for (int r = row - span; r <= row + span; r++)
+            {
+                for (int c = column - span; c <= column + span; c++)
+                {
+                    if (r < 0 || c < 0 || r >= width || c >= width) continue;
+
+                    final long key = keys[r * width + c];
+                    if (key == Lattice.NO_KEY) continue;
+                    if (lngLatHandler.isCloseTo(lattice.lng(key), lattice.lat(key), position.lng(), position.lat()))
+                        candidates.add(r * width + c);
+                }
+            }
+            candidates.sort(Comparator.comparingInt(cell -> moves[cell]));
+
+            for (int cell : candidates)
+            {
+                final List<INode.Direction> route = routeFrom(cell, position);
+                if (route == null) continue;
+                if (!reversed) return route;
+
+                final List<INode.Direction> reversedRoute = Routes.reverse(route, airspace.getIndex(), checkSegments);
+                if (reversedRoute != null) return reversedRoute;
+            }
+            return null;
+        }
+
+        /**
+         * Follows the bearings back from the given cell to the source, and replays them from the source.
+         *
+         * @return the route from the source to the given position, close to which the cell's position lies; or null if
+         * a move crossing a zone's edge cannot be replayed under the segment check.
+         */
+        private List<INode.Direction> routeFrom(int end, LngLat position)
+        {
+            final byte[] path = new byte[moves[end]];
+            long key = keys[end];
+            for (int i = path.length - 1; i >= 0; i--)
+            {
+                final byte bearing = bearings[cellOf(lattice.lng(key), lattice.lat(key))];
+                path[i] = bearing;
+                key = Lattice.predecessor(key, bearing);
+            }
+            if (key != Lattice.ORIGIN)
+                throw new IllegalStateException("distance field does not lead back to the source");
+
+            // (i) The flood checked every move from the position its cell kept at the time, which the replayed position
+            //     may differ from; a replayed move may therefore cross an edge the flood's did not.
+            final RouteBuilder route = new RouteBuilder(source, airspace.getIndex(), checkSegments);
+            for (byte bearing : path)
+            {
+                if (!route.move(bearing))
+                {
+                    if (checkSegments) return null;
+                    throw new IllegalStateException("distance field could not be replayed");
+                }
+            }
+            return route.build(position);
+        }
+
+        /**
+         * @return the (squared) distance between the given position and the centre of the given cell.
+         */
+        private double offCentre(int cell, double lng, double lat)
+        {
+            final double dx = lng - (minLng + (cell % width + 0.5) * CELL_SIZE);
+            final double dy = lat - (minLat + (cell / width + 0.5) * CELL_SIZE);
+            return dx * dx + dy * dy;
+        }
+
+        /**
+         * @return the index of the cell the position falls in, or -1 if it is outside the domain.
+         */
+        int cellOf(double lng, double lat)
+        {
+            final int column = (int) Math.floor((lng - minLng) / CELL_SIZE);
+            final int row = (int) Math.floor((lat - minLat) / CELL_SIZE);
+            if (column < 0 || row < 0 || column >= width || row >= width) return -1;
+            return row * width + column;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+/**
+ * Represents the reasons a path finding operation can fail for, see {@link IPathFinder.Result#getFailureReason()}.
+ */
+public enum FailureReason
+{
+    /**
+     * The starting position lies within a no-fly zone.
+     */
+    ORIGIN_IN_NO_FLY_ZONE,
+
+    /**
+     * The destination lies within a no-fly zone; the drone could not hover there.
+     */
+    DESTINATION_IN_NO_FLY_ZONE,
+
+    /**
+     * The destination is walled off from the starting position by the no-fly zones, see
+     * {@link uk.ac.ed.inf.lib.airspace.ReachabilityMap}.
+     */
+    UNREACHABLE,
+
+    /**
+     * The search was given up after expanding its maximum number of nodes, see
+     * {@link PathFinder#setMaxExpansions(int)}.
+     */
+    EXPANSION_LIMIT,
+
+    /**
+     * The search covered every position it could reach without finding a route.
+     */
+    EXHAUSTED
+}
@@ -0,0 +1,88 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+
+/**
+ * Represents the heuristics a search can estimate the remaining score of a node with.
+ */
+public enum Heuristic
+{
+    /**
+     * The straight-line distance to the destination.
+     */
+    EUCLIDEAN
+            {
+                double estimate(double lng, double lat, double toLng, double toLat)
+                {
+                    return Math.hypot(toLng - lng, toLat - lat);
+                }
+            },
+
+    /**
+     * The fewest moves (times their distance) which can bring the drone close to the destination, given that moves
+     * are only ever made along the {@value Lattice#BEARINGS} bearings.
+     * <p>
+     * As octile distance does for 8-connected grids, the offset to the destination is split along the two bearings
+     * enclosing it: covering the offset takes {@code |v|·cos(φ - α/2) / cos(α/2)} moves' worth of distance, where α is
+     * the angle between two bearings and φ the offset's angle from the lower one. The closeness distance is then
+     * deducted (in the same measure), and the result rounded up to a whole number of moves.
+     * <p>
+     * (i) Admissible and consistent (up to the tie-breaking inflation below): no route is shorter than the estimate,
+     * and the estimate drops by at most a move per move made. On the restaurant routes, it cuts the nodes expanded by
+     * the search by over an order of magnitude compared to {@link #EUCLIDEAN}.
+     */
+    MOVE_COUNT
+            {
+                double estimate(double lng, double lat, double toLng, double toLat)
+                {
+                    return minimumMoves(lng, lat, toLng, toLat) * MOVE * (1 + TIE_BREAK);
+                }
+            };
+
+    private static final double MOVE = SystemConstants.DRONE_MOVE_DISTANCE;
+    private static final double SECTOR = 2 * Math.PI / Lattice.BEARINGS;
+    private static final double COS_HALF_SECTOR = Math.cos(SECTOR / 2);
+    // (i) The closeness distance, measured in moves along the bearings; the most it can shorten a route by.
+    private static final double CLOSE_MOVES = SystemConstants.DRONE_IS_CLOSE_DISTANCE / MOVE / COS_HALF_SECTOR;
+    // (i) Absorbs the rounding of the lattice's steps (see Lattice#QUANTUM), such that the estimate is never rounded up
+    //     past a whole move it does not need.
+    private static final double TOLERANCE = 1e-3;
+    // (i) Whole-move estimates tie for most nodes; inflating them ever so slightly favours the nodes closest to the
+    //     destination among those. The inflation stays under a move for routes of up to 10⁴ moves, such that it
+    //     cannot lead to a longer route.
+    private static final double TIE_BREAK = 1e-4;
+
+    /**
+     * Computes the fewest moves which can bring the drone close to the destination, see {@link #MOVE_COUNT}.
+     *
+     * @param lng   the longitude of the position.
+     * @param lat   the latitude of the position.
+     * @param toLng the longitude of the destination.
+     * @param toLat the latitude of the destination.
+     * @return the lower bound of the number of moves of any route between both positions.
+     */
+    static int minimumMoves(double lng, double lat, double toLng, double toLat)
+    {
+        final double dx = toLng - lng;
+        final double dy = toLat - lat;
+        final double distance = Math.hypot(dx, dy);
+
+        // The offset's angle from the lower of the two bearings enclosing it.
+        final double angle = Math.atan2(dy, dx);
+        final double phi = angle - Math.floor(angle / SECTOR) * SECTOR;
+        final double moves = distance * Math.cos(phi - SECTOR / 2) / COS_HALF_SECTOR / MOVE - CLOSE_MOVES;
+
+        return moves <= 0 ? 0 : (int) Math.ceil(moves - TOLERANCE);
+    }
+
+    /**
+     * Estimates the remaining score from the given position to the destination.
+     *
+     * @param lng   the longitude of the position.
+     * @param lat   the latitude of the position.
+     * @param toLng the longitude of the destination.
+     * @param toLat the latitude of the destination.
+     * @return the estimated score.
+     */
+    abstract double estimate(double lng, double lat, double toLng, double toLat);
+}
@@ -0,0 +1,748 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Represents a {@link IPathFinder} planning hierarchically over clusters of the operating area, in the spirit of
+ * HPA* (Hierarchical Path-Finding A*).
+ * <p>
+ * Whenever the no-fly zones (or the operating area) are set, the operating area is divided into square clusters of
+ * {@value CLUSTER_MOVES} moves, and the abstract graph is built once:
+ * <ul>
+ *     <li>nodes: every free stretch of the border between two neighbouring clusters (an entrance) is marked by a node
+ *     in its middle, or by one at each end if it is long;</li>
+ *     <li>edges: the nodes of a cluster are connected by the length of the shortest path between them within the
+ *     cluster, found on a grid of half-move cells; the nodes of a cluster clear of the zones are connected in straight
+ *     lines.</li>
+ * </ul>
+ * A search connects both positions to the nodes of their own cluster, finds the abstract path, and drops the
+ * waypoints which can be skipped in a straight line. Only the resulting corridor is then refined into moves, leg by
+ * leg, with {@link PathFinder}; the cost of a search (in time and memory) therefore depends on the number of clusters
+ * crossed rather than on the number of moves.
+ * <p>
+ * (i) Routes are not guaranteed to be the shortest, as they pass through the chosen entrances; they are typically
+ * within a few moves of it, and reported with their bound accordingly (see {@link Result#getSuboptimalityBound()}).
+ * Positions outside the operating area, and routes failing to refine, are delegated to the fallback path finder.
+ */
+public class HierarchicalPathFinder implements IPathFinder
+{
+    /**
+     * The length of a cluster's side (in moves).
+     */
+    public static final int CLUSTER_MOVES = 16;
+
+    /**
+     * The number of clusters by which the operating area extends beyond the zones (and the area set).
+     */
+    public static final int MARGIN = 2;
+
+    private static final double CELL_SIZE = SystemConstants.DRONE_MOVE_DISTANCE / 2;
+    private static final int CELLS = 2 * CLUSTER_MOVES; // (per side of a cluster)
+    private static final double CLUSTER_SIZE = CELLS * CELL_SIZE;
+    // (i) Entrances spanning at least this many cells are marked at both ends rather than in their middle.
+    private static final int LONG_ENTRANCE = 8;
+    // (i) The number of waypoints a straight line may skip at once when smoothing the abstract path, and its maximum
+    //     length; legs are kept short, such that refining each of them stays cheap.
+    private static final int SMOOTHING_LOOKAHEAD = 8;
+    private static final double MAX_LEG_LENGTH = 2 * CLUSTER_SIZE;
+
+    private static final LngLatHandler lngLatHandler = new LngLatHandler();
+
+    final private IPathFinder fallback;
+
+    private NamedRegion[] noFlyZones;
+    private volatile NamedRegion operatingArea;
+    // (i) Replaced as a whole whenever the zones or area are set; see CompiledAirspace. Null if neither is.
+    private volatile Hierarchy hierarchy;
+    private volatile CompiledAirspace centralArea; // (null unless the central area rule is set)
+    private volatile boolean checkSegments;
+
+    /**
+     * Constructs a path finder falling back to {@link PathFinder}.
+     */
+    public HierarchicalPathFinder()
+    {
+        this(new PathFinder());
+    }
+
+    /**
+     * Constructs a path finder.
+     *
+     * @param fallback the path finder to which searches are delegated if no route is found through the clusters.
+     * @throws IllegalArgumentException if the fallback is null.
+     */
+    public HierarchicalPathFinder(IPathFinder fallback) throws IllegalArgumentException
+    {
+        if (fallback == null)
+            throw new IllegalArgumentException("fallback cannot be null");
+
+        this.fallback = fallback;
+    }
+
+    /**
+     * Sets the no-fly zones to avoid, and builds the abstract graph anew.
+     *
+     * @param noFlyZones the no-fly zones; null if there are none.
+     * @throws IllegalArgumentException if any zone is not a closed polygon (min. 3 vertices).
+     */
+    public synchronized void setNoFlyZones(NamedRegion[] noFlyZones) throws IllegalArgumentException
+    {
+        fallback.setNoFlyZones(noFlyZones);
+        this.noFlyZones = noFlyZones;
+        this.hierarchy = build(CompiledAirspace.compile(noFlyZones, true), operatingArea, checkSegments);
+    }
+
+    /**
+     * Sets the central area on both this path finder and its fallback, see
+     * {@link IPathFinder#setCentralArea(NamedRegion)}.
+     * <p>
+     * (i) Routes are found without regard to the rule, and checked against it once found; those breaking it are
+     * searched for by the fallback instead.
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    @Override
+    public void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException
+    {
+        fallback.setCentralArea(centralArea);
+        this.centralArea = centralArea == null ? null : CompiledAirspace.compile(new NamedRegion[]{centralArea}, true);
+    }
+
+    /**
+     * Sets the area routes are expected to lie within, in addition to the no-fly zones' bounds (none by default), and
+     * builds the abstract graph anew.
+     *
+     * @param operatingArea the area, whose vertices' bounds are covered by clusters; null if there is none.
+     * @throws IllegalArgumentException if the area has no vertices.
+     */
+    public synchronized void setOperatingArea(NamedRegion operatingArea) throws IllegalArgumentException
+    {
+        if (operatingArea != null && (operatingArea.vertices() == null || operatingArea.vertices().length == 0))
+            throw new IllegalArgumentException("operating area must have at least one vertex");
+
+        this.operatingArea = operatingArea;
+        this.hierarchy = build(CompiledAirspace.compile(noFlyZones, true), operatingArea, checkSegments);
+    }
+
+    /**
+     * Enables|disables the segment check of every move on both this path finder and its fallback (disabled by
+     * default), see {@link PathFinder#setSegmentCheck(boolean)}.
+     * <p>
+     * (i) Every leg is searched and replayed under the check; the abstract graph is shared with a new hierarchy,
+     * such that searches in flight keep to the mode they started under.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     */
+    @Override
+    public synchronized void setSegmentCheck(boolean enabled)
+    {
+        fallback.setSegmentCheck(enabled);
+        this.checkSegments = enabled;
+        if (hierarchy != null) this.hierarchy = new Hierarchy(hierarchy, enabled);
+    }
+
+    @Override
+    public boolean getSegmentCheck()
+    {
+        return checkSegments;
+    }
+
+    /**
+     * @return the number of nodes (entrances) of the abstract graph; 0 if there is no operating area.
+     */
+    public int size()
+    {
+        final Hierarchy hierarchy = this.hierarchy;
+        return hierarchy == null ? 0 : hierarchy.xs.length;
+    }
+
+    /**
+     * @return a fingerprint of the path finder's class, operating area, segment check and fallback; see
+     * {@link IPathFinder#getConfigurationFingerprint()}.
+     */
+    @Override
+    public long getConfigurationFingerprint()
+    {
+        final NamedRegion operatingArea = this.operatingArea;
+        long fingerprint = 31 * IPathFinder.super.getConfigurationFingerprint() +
+                NoFlyZoneIndex.fingerprintOf(operatingArea == null ? null : new NamedRegion[]{operatingArea});
+        fingerprint = 31 * fingerprint + Boolean.hashCode(checkSegments);
+        return 31 * fingerprint + fallback.getConfigurationFingerprint();
+    }
+
+    public Result findRoute(LngLat fromPos, LngLat toPos)
+    {
+        if (fromPos == null || toPos == null)
+            throw new IllegalArgumentException("positions cannot be null");
+        else if (fromPos.equals(toPos))
+            throw new IllegalArgumentException("positions cannot be equal");
+
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        final Hierarchy hierarchy = this.hierarchy;
+        if (hierarchy == null) return counter.finish(fallback.findRoute(fromPos, toPos));
+
+        List<INode.Direction> route = null;
+        try
+        {
+            final List<LngLat> waypoints = hierarchy.abstractPath(counter, fromPos, toPos);
+            if (waypoints != null)
+                route = hierarchy.refine(counter, hierarchy.smooth(counter, waypoints));
+        } catch (Exception e)
+        {
+            final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
+            final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
+            throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        }
+
+        if (route == null || !Routes.keepsToCentralArea(route, centralArea)) // (see setCentralArea)
+            return counter.finish(fallback.findRoute(fromPos, toPos));
+
+        final Result result = new Result();
+        result.setOK(true);
+        result.setRoute(route);
+        result.setSuboptimalityBound(Routes.suboptimalityBound(route));
+        return counter.finish(result);
+    }
+
+    /**
+     * @return the hierarchy covering the zones' bounds and the operating area, or null if there is neither.
+     */
+    private static Hierarchy build(CompiledAirspace airspace, NamedRegion operatingArea, boolean checkSegments)
+    {
+        double minLng = Double.POSITIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+
+        final NoFlyZoneIndex index = airspace.getIndex();
+        if (index != null && index.size() > 0)
+        {
+            minLng = index.getMinLng();
+            minLat = index.getMinLat();
+            maxLng = index.getMaxLng();
+            maxLat = index.getMaxLat();
+        }
+        if (operatingArea != null)
+        {
+            for (LngLat vertex : operatingArea.vertices())
+            {
+                minLng = Math.min(minLng, vertex.lng());
+                minLat = Math.min(minLat, vertex.lat());
+                maxLng = Math.max(maxLng, vertex.lng());
+                maxLat = Math.max(maxLat, vertex.lat());
+            }
+        }
+        if (minLng > maxLng) return null;
+
+        return new Hierarchy(airspace, minLng, minLat, maxLng, maxLat, checkSegments);
+    }
+
+    /**
+     * Represents an edge of the abstract graph, while it is being built.
+     */
+    private record Edge(int target, double cost)
+    {
+    }
+
+    /**
+     * Represents the clusters and abstract graph built for a given airspace; immutable once built.
+     */
+    private static final class Hierarchy
+    {
+        final private CompiledAirspace airspace;
+        final private PathFinder refiner;
+        final private boolean checkSegments;
+
+        // [clusters]
+        final private double minLng;
+        final private double minLat;
+        final private int columns;
+        final private int rows;
+        final private int[][] clusterNodes; // (the nodes on the border of each cluster)
+
+        // [nodes]
+        final private double[] xs;
+        final private double[] ys;
+
+        // [edges] per node (compressed).
+        final private int[] edgeStart;
+        final private int[] edgeTargets;
+        final private double[] edgeCosts;
+
+        Hierarchy(CompiledAirspace airspace, double minLng, double minLat, double maxLng, double maxLat,
+                  boolean checkSegments)
+        {
+            this.airspace = airspace;
+            this.refiner = refinerOf(airspace, checkSegments);
+            this.checkSegments = checkSegments;
+
+            this.minLng = minLng - MARGIN * CLUSTER_SIZE;
+            this.minLat = minLat - MARGIN * CLUSTER_SIZE;
+            this.columns = (int) Math.ceil((maxLng - minLng) / CLUSTER_SIZE) + 2 * MARGIN;
+            this.rows = (int) Math.ceil((maxLat - minLat) / CLUSTER_SIZE) + 2 * MARGIN;
+
+            // [1] Mark the entrances between every pair of neighbouring clusters.
+            final List<double[]> nodes = new ArrayList<>();
+            final List<List<Integer>> nodesPerCluster = new ArrayList<>();
+            for (int cluster = 0; cluster < columns * rows; cluster++) nodesPerCluster.add(new ArrayList<>());
+
+            for (int row = 0; row < rows; row++)
+            {
+                for (int column = 0; column < columns; column++)
+                {
+                    if (column + 1 < columns) addEntrances(column, row, true, nodes, nodesPerCluster);
+                    if (row + 1 < rows) addEntrances(column, row, false, nodes, nodesPerCluster);
+                }
+            }
+
+            this.xs = new double[nodes.size()];
+            this.ys = new double[nodes.size()];
+            for (int node = 0; node < nodes.size(); node++)
+            {
+                xs[node] = nodes.get(node)[0];
+                ys[node] = nodes.get(node)[1];
+            }
+            this.clusterNodes = new int[columns * rows][];
+            for (int cluster = 0; cluster < clusterNodes.length; cluster++)
+                clusterNodes[cluster] = nodesPerCluster.get(cluster).stream().mapToInt(Integer::intValue).toArray();
+
+            // [2] Connect the nodes of every cluster.
+            final List<List<Edge>> edges = new ArrayList<>();
+            for (int node = 0; node < xs.length; node++) edges.add(new ArrayList<>());
+            for (int cluster = 0; cluster < clusterNodes.length; cluster++)
+            {
+                final int[] members = clusterNodes[cluster];
+                for (int i = 0; i < members.length; i++)
+                {
+                    final double[] costs = costsWithin(cluster, xs[members[i]], ys[members[i]], members);
+                    for (int j = i + 1; j < members.length; j++)
+                    {
+                        if (costs[j] == Double.POSITIVE_INFINITY) continue;
+                        edges.get(members[i]).add(new Edge(members[j], costs[j]));
+                        edges.get(members[j]).add(new Edge(members[i], costs[j]));
+                    }
+                }
+            }
+
+            this.edgeStart = new int[xs.length + 1];
+            for (int node = 0; node < xs.length; node++) edgeStart[node + 1] = edgeStart[node] + edges.get(node).size();
+            this.edgeTargets = new int[edgeStart[xs.length]];
+            this.edgeCosts = new double[edgeStart[xs.length]];
+            for (int node = 0; node < xs.length; node++)
+            {
+                for (int k = 0; k < edges.get(node).size(); k++)
+                {
+                    edgeTargets[edgeStart[node] + k] = edges.get(node).get(k).target();
+                    edgeCosts[edgeStart[node] + k] = edges.get(node).get(k).cost();
+                }
+            }
+        }
+
+        /**
+         * Constructs a hierarchy sharing the clusters and abstract graph of the given one, whose legs are searched and
+         * replayed under the given segment check.
+         */
+        Hierarchy(Hierarchy hierarchy, boolean checkSegments)
+        {
+            this.airspace = hierarchy.airspace;
+            this.refiner = refinerOf(hierarchy.airspace, checkSegments);
+            this.checkSegments = checkSegments;
+            this.minLng = hierarchy.minLng;
+            this.minLat = hierarchy.minLat;
+            this.columns = hierarchy.columns;
+            this.rows = hierarchy.rows;
+            this.clusterNodes = hierarchy.clusterNodes;
+            this.xs = hierarchy.xs;
+            this.ys = hierarchy.ys;
+            this.edgeStart = hierarchy.edgeStart;
+            this.edgeTargets = hierarchy.edgeTargets;
+            this.edgeCosts = hierarchy.edgeCosts;
+        }
+
+        /**
+         * @return the path finder searching the legs of a route within the given airspace.
+         */
+        private static PathFinder refinerOf(CompiledAirspace airspace, boolean checkSegments)
+        {
+            final PathFinder refiner = new PathFinder();
+            refiner.setOccupancyRaster(airspace.hasRaster());
+            refiner.setAirspace(airspace);
+            refiner.setSegmentCheck(checkSegments);
+            return refiner;
+        }
+
+        /**
+         * Marks the entrances on the border between the given cluster and its neighbour to the east (vertical border)
+         * or to the north (horizontal border).
+         */
+        private void addEntrances(int column, int row, boolean vertical,
+                                  List<double[]> nodes, List<List<Integer>> nodesPerCluster)
+        {
+            final int cluster = row * columns + column;
+            final int neighbour = vertical ? cluster + 1 : cluster + columns;
+
+            // The border runs along `along` (lat for a vertical border, lng otherwise) at the fixed `across` value.
+            final double across = vertical ? minLng + (column + 1) * CLUSTER_SIZE : minLat + (row + 1) * CLUSTER_SIZE;
+            final double alongStart = vertical ? minLat + row * CLUSTER_SIZE : minLng + column * CLUSTER_SIZE;
+
+            int start = -1; // (the first cell of the current free stretch)
+            for (int cell = 0; cell <= CELLS; cell++)
+            {
+                final boolean free = cell < CELLS && isFreeBorderCell(across, alongStart + (cell + 0.5) * CELL_SIZE,
+                        vertical);
+                if (free && start < 0) start = cell;
+                if (free || start < 0) continue;
+
+                // A free stretch ends at the previous cell.
+                final int end = cell - 1;
+                final int[] marks = end - start + 1 >= LONG_ENTRANCE ?
+                        new int[]{start, end} :
+                        new int[]{(start + end) / 2};
+                for (int mark : marks)
+                {
+                    final double along = alongStart + (mark + 0.5) * CELL_SIZE;
+                    nodes.add(vertical ? new double[]{across, along} : new double[]{along, across});
+                    nodesPerCluster.get(cluster).add(nodes.size() - 1);
+                    nodesPerCluster.get(neighbour).add(nodes.size() - 1);
+                }
+                start = -1;
+            }
+        }
+
+        /**
+         * @return true if the cells on either side of the border at the given position are free, false otherwise.
+         */
+        private boolean isFreeBorderCell(double across, double along, boolean vertical)
+        {
+            final double offset = CELL_SIZE / 2;
+            return vertical ?
+                    !airspace.contains(across - offset, along) && !airspace.contains(across + offset, along) :
+                    !airspace.contains(along, across - offset) && !airspace.contains(along, across + offset);
+        }
+
+        /**
+         * Computes the length of the shortest path within the given cluster, from the given position to each target
+         * node.
+         *
+         * @return the lengths, in the targets' order; infinite if a target cannot be reached within the cluster.
+         */
+        private double[] costsWithin(int cluster, double x, double y, int[] targets)
+        {
+            final double[] targetXs = new double[targets.length];
+            final double[] targetYs = new double[targets.length];
+            for (int k = 0; k < targets.length; k++)
+            {
+                targetXs[k] = xs[targets[k]];
+                targetYs[k] = ys[targets[k]];
+            }
+            return costsWithin(cluster, x, y, targetXs, targetYs);
+        }
+
+        /**
+         * Computes the length of the shortest path within the given cluster, from the given position to each target
+         * position.
+         *
+         * @return the lengths, in the targets' order; infinite if a target cannot be reached within the cluster.
+         */
+        private double[] costsWithin(int cluster, double x, double y, double[] targetXs, double[] targetYs)
+        {
+            final double[] costs = new double[targetXs.length];
+            final double clusterLng = minLng + (cluster % columns) * CLUSTER_SIZE;
+            final double clusterLat = minLat + (cluster / columns) * CLUSTER_SIZE;
+
+            // (i) A cluster clear of the zones' bounds is free throughout; its nodes are connected in straight lines.
+            final NoFlyZoneIndex index = airspace.getIndex();
+            if (index == null || clusterLng > index.getMaxLng() || clusterLng + CLUSTER_SIZE < index.getMinLng() ||
+                    clusterLat > index.getMaxLat() || clusterLat + CLUSTER_SIZE < index.getMinLat())
+            {
+                for (int k = 0; k < costs.length; k++) costs[k] = Math.hypot(targetXs[k] - x, targetYs[k] - y);
+                return costs;
+            }
+
+            // Otherwise, run Dijkstra over the cluster's cells (8-connected), from the cell of the given position.
+            final double[] distances = new double[CELLS * CELLS];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            final int start = cellWithin(clusterLng, clusterLat, x, y);
+            if (isBlocked(clusterLng, clusterLat, start)) Arrays.fill(costs, Double.POSITIVE_INFINITY);
+            else
+            {
+                final IndexedMinHeap openSet = new IndexedMinHeap(CELLS * CELLS);
+                distances[start] = 0;
+                openSet.push(start, 0);
+                while (!openSet.isEmpty())
+                {
+                    final int cell = openSet.poll();
+                    final int column = cell % CELLS;
+                    final int row = cell / CELLS;
+                    for (int dc = -1; dc <= 1; dc++)
+                    {
+                        for (int dr = -1; dr <= 1; dr++)
+                        {
+                            final int c = column + dc;
+                            final int r = row + dr;
+                            if ((dc == 0 && dr == 0) || c < 0 || r < 0 || c >= CELLS || r >= CELLS) continue;
+
+                            final int next = r * CELLS + c;
+                            if (openSet.isClosed(next) || isBlocked(clusterLng, clusterLat, next)) continue;
+
+                            final double step = (dc != 0 && dr != 0 ? Math.sqrt(2) : 1) * CELL_SIZE;
+                            final double distance = distances[cell] + step;
+                            if (distance < distances[next])
+                            {
+                                distances[next] = distance;
+                                openSet.push(next, distance);
+                            }
+                        }
+                    }
+                }
+
+                // (i) Positions are joined to the centre of their cell.
+                for (int k = 0; k < costs.length; k++)
+                {
+                    final int cell = cellWithin(clusterLng, clusterLat, targetXs[k], targetYs[k]);
+                    costs[k] = distances[cell] + offCentre(clusterLng, clusterLat, start, x, y)
+                            + offCentre(clusterLng, clusterLat, cell, targetXs[k], targetYs[k]);
+                }
+            }
+            return costs;
+        }
+
+        /**
+         * @return the (row-major) index within its cluster of the cell the position falls in, clamped to the cluster.
+         */
+        private static int cellWithin(double clusterLng, double clusterLat, double x, double y)
+        {
+            final int column = Math.max(0, Math.min(CELLS - 1, (int) Math.floor((x - clusterLng) / CELL_SIZE)));
+            final int row = Math.max(0, Math.min(CELLS - 1, (int) Math.floor((y - clusterLat) / CELL_SIZE)));
+            return row * CELLS + column;
+        }
+
+        private boolean isBlocked(double clusterLng, double clusterLat, int cell)
+        {
+            return airspace.contains(
+                    clusterLng + (cell % CELLS + 0.5) * CELL_SIZE,
+                    clusterLat + (cell / CELLS + 0.5) * CELL_SIZE);
+        }
+
+        /**
+         * @return the distance between the given position and the centre of the given cell.
+         */
+        private static double offCentre(double clusterLng, double clusterLat, int cell, double x, double y)
+        {
+            return Math.hypot(
+                    x - (clusterLng + (cell % CELLS + 0.5) * CELL_SIZE),
+                    y - (clusterLat + (cell / CELLS + 0.5) * CELL_SIZE));
+        }
+
+        /**
+         * @return the index of the cluster the position falls in, or -1 if it is outside the operating area.
+         */
+        private int clusterOf(LngLat position)
+        {
+            final int column = (int) Math.floor((position.lng() - minLng) / CLUSTER_SIZE);
+            final int row = (int) Math.floor((position.lat() - minLat) / CLUSTER_SIZE);
+            if (column < 0 || row < 0 || column >= columns || row >= rows) return -1;
+            return row * columns + column;
+        }
+
+        /**
+         * Finds the shortest path along the abstract graph (A*), once both positions are connected to the nodes of
+         * their own cluster.
+         * <p>
+         * (i) The search only holds the nodes it visits, such that its memory does not depend on the size of the graph.
+         *
+         * @param counter the counters of the search; the abstract nodes are counted as its nodes.
+         * @return the path's waypoints, starting with `from` and ending with `to`; null if either position lies outside
+         * the operating area, or no path is found.
+         */
+        List<LngLat> abstractPath(SearchStats.Counter counter, LngLat from, LngLat to)
+        {
+            final int fromCluster = clusterOf(from);
+            final int toCluster = clusterOf(to);
+            if (fromCluster < 0 || toCluster < 0) return null;
+
+            // (i) The positions are added as two transient nodes: `from` → n, `to` → n + 1.
+            final int source = xs.length;
+            final int target = xs.length + 1;
+            final int[] fromMembers = clusterNodes[fromCluster];
+            final int[] toMembers = clusterNodes[toCluster];
+            final double[] fromCosts = costsWithin(fromCluster, from.lng(), from.lat(), fromMembers);
+            final Map<Integer, Double> toCosts = new HashMap<>();
+            final double[] costs = costsWithin(toCluster, to.lng(), to.lat(), toMembers);
+            for (int k = 0; k < toMembers.length; k++) toCosts.put(toMembers[k], costs[k]);
+
+            final Map<Integer, Double> scores = new HashMap<>();
+            final Map<Integer, Integer> parents = new HashMap<>();
+            final PriorityQueue<double[]> openSet = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+            scores.put(source, 0d);
+            openSet.add(new double[]{distanceTo(from, to), source, 0});
+            counter.generated++;
+
+            while (!openSet.isEmpty())
+            {
+                counter.open(openSet.size());
+                final double[] entry = openSet.poll();
+                final int node = (int) entry[1];
+                final double score = entry[2];
+                if (score > scores.get(node))
+                {
+                    counter.stalePops++;
+                    continue; // (superseded by a shorter path to the node)
+                }
+                counter.expanded++;
+                if (node == target) break;
+
+                // Enumerate the node's edges, including those to|from the transient nodes.
+                final List<Edge> next = new ArrayList<>();
+                if (node == source)
+                {
+                    for (int k = 0; k < fromMembers.length; k++) next.add(new Edge(fromMembers[k], fromCosts[k]));
+                    if (fromCluster == toCluster)
+                    {
+                        final double[] direct = costsWithin(fromCluster, from.lng(), from.lat(),
+                                new double[]{to.lng()}, new double[]{to.lat()});
+                        next.add(new Edge(target, direct[0]));
+                    }
+                } else
+                {
+                    for (int k = edgeStart[node]; k < edgeStart[node + 1]; k++)
+                        next.add(new Edge(edgeTargets[k], edgeCosts[k]));
+                    if (toCosts.containsKey(node)) next.add(new Edge(target, toCosts.get(node)));
+                }
+
+                for (Edge edge : next)
+                {
+                    if (edge.cost() == Double.POSITIVE_INFINITY) continue;
+
+                    final double newScore = score + edge.cost();
+                    if (newScore < scores.getOrDefault(edge.target(), Double.POSITIVE_INFINITY))
+                    {
+                        if (scores.put(edge.target(), newScore) == null) counter.generated++;
+                        parents.put(edge.target(), node);
+                        final double estimate = edge.target() == target ? 0 : distanceTo(edge.target(), to);
+                        openSet.add(new double[]{newScore + estimate, edge.target(), newScore});
+                    }
+                }
+            }
+            if (!parents.containsKey(target)) return null;
+
+            final List<LngLat> path = new ArrayList<>();
+            for (int node = target; node != source; node = parents.get(node))
+                path.add(node == target ? to : new LngLat(xs[node], ys[node]));
+            path.add(from);
+            Collections.reverse(path);
+            return path;
+        }
+
+        /**
+         * Drops the waypoints which can be skipped in a straight line clear of the zones, looking up to
+         * {@value SMOOTHING_LOOKAHEAD} waypoints (and two clusters) ahead.
+         *
+         * @return the remaining waypoints, still starting with `from` and ending with `to`.
+         */
+        List<LngLat> smooth(SearchStats.Counter counter, List<LngLat> waypoints)
+        {
+            final List<LngLat> smoothed = new ArrayList<>();
+            smoothed.add(waypoints.get(0));
+
+            int current = 0;
+            while (current < waypoints.size() - 1)
+            {
+                int next = Math.min(waypoints.size() - 1, current + SMOOTHING_LOOKAHEAD);
+                while (next > current + 1 && !isSkippable(counter, waypoints.get(current), waypoints.get(next))) next--;
+
+                smoothed.add(waypoints.get(next));
+                current = next;
+            }
+            return smoothed;
+        }
+
+        /**
+         * @return true if the straight line between both positions is short enough for a leg, and (sampled every
+         * quarter of a cell) stays clear of the zones; false otherwise.
+         */
+        private boolean isSkippable(SearchStats.Counter counter, LngLat from, LngLat to)
+        {
+            final double length = distanceTo(from, to);
+            if (length > MAX_LEG_LENGTH) return false;
+
+            final int samples = (int) Math.ceil(length / (CELL_SIZE / 4));
+            for (int k = 1; k < samples; k++)
+            {
+                final double t = (double) k / samples;
+                final double lng = from.lng() + t * (to.lng() - from.lng());
+                final double lat = from.lat() + t * (to.lat() - from.lat());
+                counter.containmentChecks++;
+                if (airspace.contains(lng, lat)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Refines the corridor into moves, leg by leg: every leg is searched with {@link PathFinder} from where the
+         * previous one ended, such that the moves follow on from one another.
+         * <p>
+         * (i) Each leg is searched on the lattice of its own starting position; its moves are replayed from the route's
+         * starting position, such that every position follows bit-exactly from it (see {@link CompactRoute}).
+         *
+         * @param counter the counters of the search; the work of every leg is added to them.
+         * @return the route along the waypoints, or null if any leg could not be refined.
+         */
+        List<INode.Direction> refine(SearchStats.Counter counter, List<LngLat> waypoints)
+        {
+            final LngLat from = waypoints.get(0);
+            final LngLat to = waypoints.get(waypoints.size() - 1);
+            final RouteBuilder route = new RouteBuilder(from, airspace.getIndex(), checkSegments);
+
+            LngLat current = from;
+            for (int k = 1; k < waypoints.size(); k++)
+            {
+                final LngLat waypoint = waypoints.get(k);
+                final boolean last = k == waypoints.size() - 1;
+                // (i) Intermediate waypoints only guide the route; one already close by is skipped.
+                if ((!last && lngLatHandler.isCloseTo(current, waypoint)) || current.equals(waypoint)) continue;
+
+                final Result leg = refiner.findRoute(current, waypoint);
+                counter.add(leg.getStats());
+                if (!leg.getOk()) return null;
+
+                // [(current, hover), moves..., (waypoint, hover)] → moves only.
+                final List<INode.Direction> legRoute = leg.getRoute();
+                for (int i = 1; i < legRoute.size() - 1; i++)
+                {
+                    if (!route.move(Lattice.bearingOf(legRoute.get(i).angle()))) return null;
+                }
+                if (legRoute.size() > 2) current = new LngLat(route.lng(), route.lat());
+            }
+
+            return route.isCloseTo(to) ? route.build(to) : null;
+        }
+
+        /**
+         * @return the straight-line distance between the node and the given position.
+         */
+        private double distanceTo(int node, LngLat to)
+        {
+            return Math.hypot(to.lng() - xs[node], to.lat() - ys[node]);
+        }
+
+        private static double distanceTo(LngLat from, LngLat to)
+        {
+            return Math.hypot(to.lng() - from.lng(), to.lat() - from.lat());
+        }
+    }
+}
@@ -3,66 +3,31 @@ package uk.ac.ed.inf.lib.pathFinder;
 import uk.ac.ed.inf.ilp.data.LngLat;
 
 /**
- * Represents a node in the path.
+ * Represents a node in the path, as the direction the drone takes there.
+ * <p>
+ * (i) Searches keep their nodes in a {@link NodeStore}; routes are lists of {@link Direction}s.
  */
-public interface INode extends Comparable<INode>
+public interface INode
 {
     /**
-     * @return The previous node in the path.
-     */
-    INode getPrevious();
-
-    /**
-     * Sets the previous node in the path.
-     */
-    void setPrevious(INode previous);
-
-    /**
-     * @return The direction of the node.
-     */
-    Direction getDirection();
-
-    /**
-     * @return The score of the path to this node (gScore).
-     */
-    double getRouteScore();
-
-    /**
-     * Sets the score of the path to this node.
-     */
-    void setRouteScore(double routeScore);
-
-    /**
-     * @return The estimated score of the path to the restaurant.
-     */
-    double getEstimatedScore();
-
-    /**
-     * Sets the estimated score of the node to the destination (fScore).
-     */
-    void setEstimatedScore(double estimatedScore);
-
-    /**
-     * Returns the outcome of {@link Double#compare(double, double)}.
-     */
-    @Override
-    int compareTo(INode o);
-
-    /**
-     * Represents a {@link INode} direction.
+     * Represents the direction of a node in the path.
      * <p>
      * An angle of 999 is used to indicate that the bearing is unknown (the drone is hovering at the position).
+     * <p>
+     * The index is the direction's position in its route (0 → the starting hover), such that routes are reproducible
+     * across runs.
      */
-    record Direction(LngLat position, double angle, long ticksSinceStart)
+    record Direction(LngLat position, double angle, long index)
     {
         /**
          * Constructs a direction with no angle.
          *
          * @param position the position of the direction.
+         * @param index    the index of the direction in its route.
          */
-        Direction(LngLat position, long ticksSinceStart)
+        Direction(LngLat position, long index)
         {
-            this(position, 999, ticksSinceStart);
+            this(position, 999, index);
         }
     }
 }
@@ -3,8 +3,8 @@ package uk.ac.ed.inf.lib.pathFinder;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -22,8 +22,63 @@ public interface IPathFinder
      */
     Result findRoute(LngLat from, LngLat to) throws RuntimeException;
 
+    /**
+     * Performs a path finding operation within the given time budget.
+     * <p>
+     * Implementations supporting an anytime search return the best route found once the budget runs out, along with
+     * the suboptimality bound it is guaranteed to meet (see {@link Result#getSuboptimalityBound()}); by default, the
+     * budget is ignored.
+     *
+     * @param from   the starting position.
+     * @param to     the ending position.
+     * @param budget the time after which the search should return; null if unbounded.
+     * @return the result of the search.
+     * @throws RuntimeException if an unexpected error occurs during execution.
+     */
+    default Result findRoute(LngLat from, LngLat to, Duration budget) throws RuntimeException
+    {
+        return findRoute(from, to);
+    }
+
     void setNoFlyZones(NamedRegion[] noFlyZones);
 
+    /**
+     * Sets the central area, and with it the rule that a drone entering the central area cannot leave it again (e.g.
+     * on its way back to Appleton Tower).
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException;
+
+    /**
+     * Enables|disables the segment check of every move, such that moves crossing a no-fly zone's edge are rejected as
+     * well as those ending within a zone.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     * @see PathFinder#setSegmentCheck(boolean)
+     */
+    void setSegmentCheck(boolean enabled);
+
+    /**
+     * @return true if the segment of every move is checked, false otherwise; see {@link #setSegmentCheck(boolean)}.
+     */
+    boolean getSegmentCheck();
+
+    /**
+     * Computes a fingerprint of the path finder's configuration: its kind, and every setting affecting the routes it
+     * finds (other than the no-fly zones and the central area), such that routes found under one configuration can be
+     * told apart from those found under another (e.g. when cached, see {@link CachingPathFinder}).
+     * <p>
+     * (i) Stable across runs; by default, derived from the name of the path finder's class.
+     *
+     * @return the fingerprint.
+     */
+    default long getConfigurationFingerprint()
+    {
+        return getClass().getName().hashCode();
+    }
+
     /**
      * Represents the result of a path finding operation.
      */
@@ -32,12 +87,17 @@ public interface IPathFinder
         private List<INode.Direction> path;
         private String orderNo;
         private boolean ok;
+        private double suboptimalityBound;
+        private SearchStats stats;
+        private FailureReason failureReason;
 
         public Result()
         {
             this.ok = false;
             this.orderNo = "";
             this.path = new ArrayList<>();
+            this.suboptimalityBound = 1;
+            this.stats = SearchStats.NONE;
         }
 
         /**
@@ -72,6 +132,56 @@ public interface IPathFinder
             return path;
         }
 
+        /**
+         * @return the factor by which the path is at most longer than the shortest one (1 → the shortest); greater
+         * than 1 if an anytime search ran out of its time budget, or if the path finder does not guarantee the shortest
+         * path (e.g. {@link VisibilityGraphPathFinder}).
+         */
+        public double getSuboptimalityBound()
+        {
+            return suboptimalityBound;
+        }
+
+        /**
+         * Sets the factor by which the path is at most longer than the shortest one.
+         */
+        public void setSuboptimalityBound(double suboptimalityBound)
+        {
+            this.suboptimalityBound = suboptimalityBound;
+        }
+
+        /**
+         * @return the work performed by the search; {@link SearchStats#NONE} if it was not recorded.
+         */
+        public SearchStats getStats()
+        {
+            return stats;
+        }
+
+        /**
+         * Sets the work performed by the search.
+         */
+        public void setStats(SearchStats stats)
+        {
+            this.stats = stats;
+        }
+
+        /**
+         * @return the reason no path was found; null if one was, or if the search did not report a reason.
+         */
+        public FailureReason getFailureReason()
+        {
+            return failureReason;
+        }
+
+        /**
+         * Sets the reason no path was found.
+         */
+        public void setFailureReason(FailureReason failureReason)
+        {
+            this.failureReason = failureReason;
+        }
+
         /**
          * Sets the outcome of the search.
          */
@@ -81,25 +191,24 @@ public interface IPathFinder
         }
 
         /**
-         * Reconstructs the path from the given node to the starting node.
+         * Sets the directions constituting the path.
          *
-         * @param end     the actual end final node (destination).
-         * @param current the current node.
+         * @param route the directions, in order of travel.
+         */
+        public void setRoute(List<INode.Direction> route)
+        {
+            this.path = route;
+        }
+
+        /**
+         * Replaces the directions by their compact form, if they can be represented as such; see {@link CompactRoute}.
+         * <p>
+         * (i) Intended for results held on to (e.g. until written out); the directions are unchanged.
          */
-        public void setRoute(INode.Direction end, INode current)
+        public void compact()
         {
-            // [requirement] the drone must hover for one move at its destination (restaurant or when delivery to AT).
-            path.add(end);
-            while (current != null)
-            {
-                path.add(current.getDirection());
-                current = current.getPrevious();
-            }
-
-            // Assign the sorted list of directions as the path.
-            path = path.stream()
-                    .sorted(Comparator.comparingLong(INode.Direction::ticksSinceStart))
-                    .toList();
+            final CompactRoute compactRoute = CompactRoute.of(path);
+            if (compactRoute != null) this.path = compactRoute;
         }
     }
 }
@@ -0,0 +1,238 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Represents a binary min-heap of node ids, ordered by their priority (fScore).
+ * <p>
+ * Unlike {@link java.util.PriorityQueue}, an id is only ever held once: pushing an id that is already queued updates
+ * its priority in place (decrease-key) rather than adding a second, stale entry. Ids removed through {@link #poll()}
+ * are flagged as closed, such that expanded nodes can be recognised without any additional lookup.
+ * <p>
+ * Ids are expected to be dense (0, 1, 2, ...), as they are used to index the heap's internal arrays.
+ */
+public class IndexedMinHeap
+{
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // (i) Values of `positions` other than a heap index.
+    private static final int ABSENT = -1;
+    private static final int CLOSED = -2;
+
+    private int[] heap; // heap index → id
+    private int[] positions; // id → heap index (or `ABSENT` | `CLOSED`)
+    private double[] priorities; // id → priority
+    private int size;
+    private int idLimit; // (exclusive upper bound of the ids seen since the last reset)
+
+    /**
+     * Constructs an empty heap.
+     */
+    public IndexedMinHeap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty heap.
+     *
+     * @param capacity the number of ids to allocate room for; the heap grows as needed.
+     */
+    public IndexedMinHeap(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.priorities = new double[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    /**
+     * @return true if no ids are queued, false otherwise.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of queued ids.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return true if the given id is currently queued, false otherwise.
+     */
+    public boolean contains(int id)
+    {
+        return id < idLimit && positions[id] >= 0;
+    }
+
+    /**
+     * @return true if the given id has been polled (closed), false otherwise.
+     */
+    public boolean isClosed(int id)
+    {
+        return id < idLimit && positions[id] == CLOSED;
+    }
+
+    /**
+     * @return the current priority of the given id; only meaningful if the id has been pushed before.
+     */
+    public double priorityOf(int id)
+    {
+        return priorities[id];
+    }
+
+    /**
+     * Queues the given id, or updates its priority if it is already queued.
+     * <p>
+     * (i) A closed id is re-opened.
+     *
+     * @param id       the id to queue.
+     * @param priority the id's priority (lower is polled first).
+     */
+    public void push(int id, double priority)
+    {
+        if (id < 0)
+            throw new IllegalArgumentException("id cannot be negative");
+
+        ensureCapacity(id + 1);
+        if (id >= idLimit)
+        {
+            idLimit = id + 1;
+        }
+
+        final int position = positions[id];
+        if (position >= 0)
+        {
+            // Decrease|increase-key: the id is re-positioned rather than duplicated.
+            final double previous = priorities[id];
+            priorities[id] = priority;
+            if (priority < previous) siftUp(position);
+            else siftDown(position);
+            return;
+        }
+
+        priorities[id] = priority;
+        heap[size] = id;
+        positions[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * @return the queued ids, in no particular order.
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(heap, size);
+    }
+
+    /**
+     * @return the id with the lowest priority without removing it.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int peek() throws IllegalStateException
+    {
+        if (size == 0)
+            throw new IllegalStateException("heap is empty");
+
+        return heap[0];
+    }
+
+    /**
+     * Removes the id with the lowest priority and flags it as closed.
+     *
+     * @return the removed id.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int poll() throws IllegalStateException
+    {
+        final int id = peek();
+
+        final int last = heap[--size];
+        positions[id] = CLOSED;
+        if (size > 0)
+        {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+
+        return id;
+    }
+
+    /**
+     * Empties the heap and clears every closed flag, retaining the allocated capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(positions, 0, idLimit, ABSENT);
+        size = 0;
+        idLimit = 0;
+    }
+
+    /**
+     * Moves the entry at the given heap index up until the heap property is restored.
+     */
+    private void siftUp(int index)
+    {
+        final int id = heap[index];
+        final double priority = priorities[id];
+        while (index > 0)
+        {
+            final int parentIndex = (index - 1) >>> 1;
+            final int parent = heap[parentIndex];
+            if (priorities[parent] <= priority) break;
+
+            heap[index] = parent;
+            positions[parent] = index;
+            index = parentIndex;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    /**
+     * Moves the entry at the given heap index down until the heap property is restored.
+     */
+    private void siftDown(int index)
+    {
+        final int id = heap[index];
+        final double priority = priorities[id];
+        final int half = size >>> 1;
+        while (index < half)
+        {
+            int childIndex = 2 * index + 1;
+            final int right = childIndex + 1;
+            if (right < size && priorities[heap[right]] < priorities[heap[childIndex]]) childIndex = right;
+
+            final int child = heap[childIndex];
+            if (priority <= priorities[child]) break;
+
+            heap[index] = child;
+            positions[child] = index;
+            index = childIndex;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    /**
+     * Grows the internal arrays such that ids up to (exclusive) the given capacity can be held.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= positions.length) return;
+
+        final int newCapacity = Math.max(capacity, positions.length * 2);
+        final int oldCapacity = positions.length;
+        heap = Arrays.copyOf(heap, newCapacity);
+        positions = Arrays.copyOf(positions, newCapacity);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        Arrays.fill(positions, oldCapacity, newCapacity, ABSENT);
+    }
+}
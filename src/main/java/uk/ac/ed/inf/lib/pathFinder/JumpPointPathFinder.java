@@ -0,0 +1,379 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.OccupancyRaster;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a {@link IPathFinder} breaking the symmetry of the move lattice in the spirit of Jump Point Search.
+ * <p>
+ * Rather than queueing every position one move away, each expansion "jumps" along each bearing, one move at a time,
+ * until one of the following is encountered:
+ * <ul>
+ *     <li>the destination (a position close to it);</li>
+ *     <li>the position closest to the destination along the bearing, from which the route may turn towards it;</li>
+ *     <li>a forced neighbour: the position one move away at a right angle changes from free to blocked (or vice-versa),
+ *     i.e. a no-fly zone's boundary starts|ends alongside the jump;</li>
+ *     <li>a blocked move (or, if enabled, one crossing a zone's edge), in which case the jump ends at the last free
+ *     position;</li>
+ *     <li>{@value MAX_JUMP} moves.</li>
+ * </ul>
+ * Only the positions the jumps end at (jump points) are queued; the intermediate positions of a jump are reconstructed
+ * once the route has been found. Jump points ending at a plain {@value MAX_JUMP}-move limit only continue within
+ * {@value NATURAL_SPREAD} bearings of their own; every other jump point is expanded along all
+ * {@value Lattice#BEARINGS} bearings.
+ * <p>
+ * (i) Unlike Jump Point Search on a uniform grid, the pruning is not proven optimal for the compass lattice; routes are
+ * typically within a few moves of the shortest one, and reported with their bound accordingly (see
+ * {@link Result#getSuboptimalityBound()}). Searches are ruled out and confined as in {@link PathFinder}; should no
+ * route be found within the domain or the maximum number of expansions, the search is delegated to the fallback path
+ * finder.
+ */
+public class JumpPointPathFinder implements IPathFinder
+{
+    /**
+     * The maximum number of moves in a single jump.
+     */
+    public static final int MAX_JUMP = 8;
+
+    /**
+     * The number of bearings on either side of its own a jump point is expanded along, unless expanded fully.
+     */
+    public static final int NATURAL_SPREAD = 2;
+
+    /**
+     * @see PathFinder
+     */
+    final private LngLatHandler lngLatHandler;
+    final private IPathFinder fallback;
+
+    private volatile CompiledAirspace airspace; // (see PathFinder)
+    private volatile CompiledAirspace centralArea; // (null unless the central area rule is set)
+    private volatile boolean useRaster;
+    private volatile int maxExpansions = PathFinder.DEFAULT_MAX_EXPANSIONS;
+    private volatile boolean checkSegments;
+
+    /**
+     * Constructs a path finder falling back to {@link PathFinder}.
+     */
+    public JumpPointPathFinder()
+    {
+        this(new PathFinder());
+    }
+
+    /**
+     * Constructs a path finder.
+     *
+     * @param fallback the path finder to which searches are delegated if no route is found.
+     * @throws IllegalArgumentException if the fallback is null.
+     */
+    public JumpPointPathFinder(IPathFinder fallback) throws IllegalArgumentException
+    {
+        if (fallback == null)
+            throw new IllegalArgumentException("fallback cannot be null");
+
+        this.lngLatHandler = new LngLatHandler();
+        this.fallback = fallback;
+        this.airspace = CompiledAirspace.EMPTY;
+    }
+
+    /**
+     * Sets the no-fly zones to avoid, and compiles them into a new airspace snapshot.
+     *
+     * @param noFlyZones the no-fly zones; null if there are none.
+     * @throws IllegalArgumentException if any zone is not a closed polygon (min. 3 vertices).
+     */
+    public synchronized void setNoFlyZones(NamedRegion[] noFlyZones) throws IllegalArgumentException
+    {
+        fallback.setNoFlyZones(noFlyZones);
+        this.airspace = CompiledAirspace.compile(noFlyZones, useRaster);
+    }
+
+    /**
+     * Sets the central area on both this path finder and its fallback, see
+     * {@link IPathFinder#setCentralArea(NamedRegion)}.
+     * <p>
+     * (i) Routes are found without regard to the rule, and checked against it once found; those breaking it are
+     * searched for by the fallback instead.
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    @Override
+    public void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException
+    {
+        fallback.setCentralArea(centralArea);
+        this.centralArea = centralArea == null ? null : CompiledAirspace.compile(new NamedRegion[]{centralArea}, true);
+    }
+
+    /**
+     * Enables|disables the precompiled occupancy raster of the no-fly zones (disabled by default).
+     * <p>
+     * (i) Jumps test the positions alongside them as well as their own, which makes the raster all the more
+     * worthwhile; see {@link OccupancyRaster}.
+     *
+     * @param enabled true to use the raster, false otherwise.
+     */
+    public synchronized void setOccupancyRaster(boolean enabled)
+    {
+        this.useRaster = enabled;
+        this.airspace = airspace.withRaster(enabled);
+    }
+
+    /**
+     * Sets the number of jump points expanded at most ({@value PathFinder#DEFAULT_MAX_EXPANSIONS} by default), after
+     * which the search is delegated to the fallback path finder.
+     *
+     * @param maxExpansions the maximum number of jump points expanded.
+     * @throws IllegalArgumentException if the number is not positive.
+     * @see PathFinder#setMaxExpansions(int)
+     */
+    public void setMaxExpansions(int maxExpansions) throws IllegalArgumentException
+    {
+        if (maxExpansions <= 0)
+            throw new IllegalArgumentException("maximum number of expansions must be positive");
+
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Enables|disables the segment check of every move on both this path finder and its fallback (disabled by
+     * default), see {@link PathFinder#setSegmentCheck(boolean)}.
+     * <p>
+     * (i) A jump ends before a move crossing a zone's edge, as it does before a blocked move; the moves of every jump
+     * are checked again as the route is replayed.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     */
+    @Override
+    public void setSegmentCheck(boolean enabled)
+    {
+        fallback.setSegmentCheck(enabled);
+        this.checkSegments = enabled;
+    }
+
+    @Override
+    public boolean getSegmentCheck()
+    {
+        return checkSegments;
+    }
+
+    /**
+     * @return a fingerprint of the path finder's class, segment check, maximum number of expansions and fallback; see
+     * {@link IPathFinder#getConfigurationFingerprint()}.
+     */
+    @Override
+    public long getConfigurationFingerprint()
+    {
+        long fingerprint = IPathFinder.super.getConfigurationFingerprint();
+        fingerprint = 31 * fingerprint + Boolean.hashCode(checkSegments);
+        fingerprint = 31 * fingerprint + maxExpansions;
+        return 31 * fingerprint + fallback.getConfigurationFingerprint();
+    }
+
+    public Result findRoute(LngLat fromPos, LngLat toPos)
+    {
+        if (fromPos == null || toPos == null)
+            throw new IllegalArgumentException("positions cannot be null");
+        else if (fromPos.equals(toPos))
+            throw new IllegalArgumentException("positions cannot be equal");
+
+        final CompiledAirspace airspace = this.airspace;
+        final Result failed = PathFinder.precheck(airspace, fromPos, toPos); // (the fallback would fail alike)
+        if (failed != null) return failed;
+
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        final CompiledAirspace centralArea = this.centralArea;
+        final int maxExpansions = this.maxExpansions;
+        final boolean checkSegments = this.checkSegments;
+        final PathFinder.Domain domain = PathFinder.Domain.of(airspace, centralArea, fromPos, toPos);
+        final Lattice lattice = new Lattice(fromPos);
+        final IndexedMinHeap openSet = new IndexedMinHeap();
+        final NodeStore jumpPoints = new NodeStore();
+        final BitSet expandFully = new BitSet(); // (jump points expanded along every bearing, by id)
+
+        final double toLng = toPos.lng();
+        final double toLat = toPos.lat();
+
+        final int startId = jumpPoints.add(Lattice.ORIGIN);
+        jumpPoints.setRouteScore(startId, 0d);
+        jumpPoints.setEstimatedScore(startId, lngLatHandler.distanceTo(fromPos, toPos));
+        openSet.push(startId, jumpPoints.getEstimatedScore(startId));
+        expandFully.set(startId);
+        counter.generated++;
+
+        try
+        {
+            while (!openSet.isEmpty() && counter.expanded < maxExpansions)
+            {
+                counter.open(openSet.size());
+                final int currentId = openSet.poll();
+                final long currentKey = jumpPoints.getKey(currentId);
+                counter.expanded++;
+
+                if (lngLatHandler.isCloseTo(lattice.lng(currentKey), lattice.lat(currentKey), toLng, toLat))
+                {
+                    final List<INode.Direction> route =
+                            buildRoute(airspace, fromPos, toPos, jumpPoints, currentId, checkSegments);
+                    if (!Routes.keepsToCentralArea(route, centralArea)) continue; // (rejected, see setCentralArea)
+
+                    final Result result = new Result();
+                    result.setOK(true);
+                    result.setRoute(route);
+                    result.setSuboptimalityBound(Routes.suboptimalityBound(route));
+                    return counter.finish(result);
+                }
+
+                final int arrival = jumpPoints.getBearing(currentId);
+                final boolean full = expandFully.get(currentId) || arrival == NodeStore.NO_BEARING;
+                final int first = full ? 0 : arrival - NATURAL_SPREAD;
+                final int last = full ? Lattice.BEARINGS - 1 : arrival + NATURAL_SPREAD;
+                for (int b = first; b <= last; b++)
+                {
+                    final int bearing = Math.floorMod(b, Lattice.BEARINGS);
+                    final Jump jump =
+                            jump(airspace, domain, counter, lattice, currentKey, bearing, toLng, toLat, checkSegments);
+                    if (jump == null) continue;
+
+                    int nextId = jumpPoints.find(jump.key());
+                    if (nextId == NodeStore.NOT_FOUND)
+                    {
+                        nextId = jumpPoints.add(jump.key());
+                        counter.generated++;
+                    } else if (openSet.isClosed(nextId)) continue;
+
+                    final double newScore =
+                            jumpPoints.getRouteScore(currentId) + jump.moves() * SystemConstants.DRONE_MOVE_DISTANCE;
+                    if (newScore < jumpPoints.getRouteScore(nextId))
+                    {
+                        final double estimatedScore = newScore +
+                                lngLatHandler.distanceTo(lattice.lng(jump.key()), lattice.lat(jump.key()), toLng, toLat);
+
+                        jumpPoints.setParent(nextId, currentId, bearing);
+                        jumpPoints.setRouteScore(nextId, newScore); // [gScore]
+                        jumpPoints.setEstimatedScore(nextId, estimatedScore); // [fScore]
+                        expandFully.set(nextId, jump.forced());
+                        openSet.push(nextId, estimatedScore);
+                    }
+                }
+            }
+        } catch (Exception e)
+        {
+            final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
+            final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
+            throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        }
+
+        return counter.finish(fallback.findRoute(fromPos, toPos)); // (reports the work of both searches)
+    }
+
+    /**
+     * Jumps from the given position along the given bearing.
+     *
+     * @return the jump, or null if not even a single move can be made.
+     */
+    private Jump jump(CompiledAirspace airspace, PathFinder.Domain domain, SearchStats.Counter counter,
+                      Lattice lattice, long fromKey, int bearing, double toLng, double toLat, boolean checkSegments)
+    {
+        final int left = (bearing + Lattice.BEARINGS / 4) % Lattice.BEARINGS;
+        final int right = (bearing + 3 * Lattice.BEARINGS / 4) % Lattice.BEARINGS;
+
+        long previous = fromKey;
+        double previousDistance = lngLatHandler.distanceTo(lattice.lng(fromKey), lattice.lat(fromKey), toLng, toLat);
+        boolean leftFree = isWithinBoundary(airspace, domain, counter, lattice, Lattice.neighbour(fromKey, left));
+        boolean rightFree = isWithinBoundary(airspace, domain, counter, lattice, Lattice.neighbour(fromKey, right));
+        boolean approaching = false;
+
+        for (int moves = 1; moves <= MAX_JUMP; moves++)
+        {
+            final long next = Lattice.neighbour(previous, bearing);
+            if (!isWithinBoundary(airspace, domain, counter, lattice, next) ||
+                    (checkSegments && PathFinder.crossesBoundary(airspace, counter, lattice, previous, next)))
+                return moves == 1 ? null : new Jump(previous, moves - 1, true); // (blocked ahead)
+
+            final double lng = lattice.lng(next);
+            final double lat = lattice.lat(next);
+            if (lngLatHandler.isCloseTo(lng, lat, toLng, toLat)) return new Jump(next, moves, true);
+
+            // (i) The closest approach is only known one move later; the jump ends at the previous position.
+            final double distance = lngLatHandler.distanceTo(lng, lat, toLng, toLat);
+            if (moves == 1) approaching = distance < previousDistance;
+            else if (approaching && distance >= previousDistance) return new Jump(previous, moves - 1, true);
+
+            final boolean nextLeftFree =
+                    isWithinBoundary(airspace, domain, counter, lattice, Lattice.neighbour(next, left));
+            final boolean nextRightFree =
+                    isWithinBoundary(airspace, domain, counter, lattice, Lattice.neighbour(next, right));
+            if (nextLeftFree != leftFree || nextRightFree != rightFree) return new Jump(next, moves, true); // (forced)
+
+            previous = next;
+            previousDistance = distance;
+            leftFree = nextLeftFree;
+            rightFree = nextRightFree;
+        }
+        return new Jump(previous, MAX_JUMP, false);
+    }
+
+    /**
+     * Creates the route leading to the given jump point, replaying the moves of every jump along the way.
+     */
+    private List<INode.Direction> buildRoute(CompiledAirspace airspace, LngLat fromPos, LngLat toPos,
+                                             NodeStore jumpPoints, int id, boolean checkSegments)
+    {
+        final int[] chain = new int[jumpPoints.depthOf(id) + 1];
+        for (int i = chain.length - 1; i >= 0; i--)
+        {
+            chain[i] = id;
+            id = jumpPoints.getParent(id);
+        }
+
+        final RouteBuilder route = new RouteBuilder(fromPos, airspace.getIndex(), checkSegments);
+        for (int i = 1; i < chain.length; i++)
+        {
+            final int bearing = jumpPoints.getBearing(chain[i]);
+            final double score = jumpPoints.getRouteScore(chain[i]) - jumpPoints.getRouteScore(chain[i - 1]);
+            final long moves = Math.round(score / SystemConstants.DRONE_MOVE_DISTANCE);
+            for (long move = 0; move < moves; move++)
+            {
+                if (!route.move(bearing))
+                    throw new IllegalStateException("jump could not be replayed");
+            }
+        }
+        return route.build(toPos);
+    }
+
+    /**
+     * @return true if the given position is representable, within the domain, and not within the no-fly zones.
+     * @see PathFinder
+     */
+    private static boolean isWithinBoundary(CompiledAirspace airspace, PathFinder.Domain domain,
+                                            SearchStats.Counter counter, Lattice lattice, long key)
+    {
+        if (key == Lattice.NO_KEY) return false;
+
+        final double lng = lattice.lng(key);
+        final double lat = lattice.lat(key);
+        if (!domain.contains(lng, lat)) return false;
+
+        counter.containmentChecks++;
+        return !airspace.contains(lng, lat);
+    }
+
+    /**
+     * Represents the outcome of a jump.
+     *
+     * @param key    the key of the jump point.
+     * @param moves  the number of moves from the jump's starting position.
+     * @param forced true if the jump point is to be expanded along every bearing, false otherwise.
+     */
+    private record Jump(long key, int moves, boolean forced)
+    {
+    }
+}
@@ -0,0 +1,216 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.lib.LngLatHandler;
+
+/**
+ * Represents the integer coordinate space of every position reachable from a given origin.
+ * <p>
+ * Positions are expressed as (i, j) multiples of {@link #QUANTUM} along the longitude and latitude axes, relative to
+ * the origin, and each of the {@value LngLatHandler#BEARING_COUNT} bearings is approximated by a fixed integer step
+ * vector. As integer addition is exact, the same position reached through a different ordering of moves always
+ * resolves to the same key; keys are packed into a single {@code long} so that no coordinates need to be boxed
+ * during the search.
+ */
+public class Lattice
+{
+    /**
+     * The number of bearings a move can be made in.
+     */
+    public static final int BEARINGS = (int) LngLatHandler.BEARING_COUNT;
+
+    /**
+     * The number of quanta per {@value SystemConstants#DRONE_MOVE_DISTANCE} move (2¹⁹).
+     */
+    public static final int STEP_RESOLUTION = 1 << 19;
+
+    /**
+     * The length of a single quantum in degrees.
+     * <p>
+     * (i) Each step vector is rounded to the nearest quantum, which bounds the error per move to ~2·10⁻¹⁰ degrees.
+     */
+    public static final double QUANTUM = SystemConstants.DRONE_MOVE_DISTANCE / STEP_RESOLUTION;
+
+    /**
+     * The largest offset (in quanta) representable along either axis; covers 2048 moves in any direction, which is
+     * more than {@value SystemConstants#DRONE_MAX_MOVES} allows for.
+     */
+    public static final int MAX_OFFSET = (1 << 30) - 1;
+
+    /**
+     * The key of the origin.
+     */
+    public static final long ORIGIN = pack(0, 0);
+
+    /**
+     * Returned in place of a key when a position falls outside the representable space.
+     */
+    public static final long NO_KEY = -1L;
+
+    /**
+     * A bit left free by the packed offsets, with which a search can tell apart two states of the same position (e.g.
+     * see {@link PathFinder#setCentralArea}).
+     * <p>
+     * (i) The bit is ignored by every method of the lattice; keys derived from a flagged key are not flagged.
+     */
+    public static final long STATE_FLAG = 1L << 62;
+
+    // (i) Each axis is stored as a biased 31-bit field, such that valid keys are always non-negative.
+    private static final int BIAS = 1 << 30;
+    private static final long FIELD_MASK = (1L << 31) - 1;
+
+    private static final int[] STEP_I = new int[BEARINGS];
+    private static final int[] STEP_J = new int[BEARINGS];
+
+    static
+    {
+        for (int bearing = 0; bearing < BEARINGS; bearing++)
+        {
+            final double angleInRadi = Math.toRadians(angleOf(bearing));
+            STEP_I[bearing] = (int) Math.round(Math.cos(angleInRadi) * STEP_RESOLUTION);
+            STEP_J[bearing] = (int) Math.round(Math.sin(angleInRadi) * STEP_RESOLUTION);
+        }
+    }
+
+    final private LngLat origin;
+
+    /**
+     * Constructs a lattice.
+     *
+     * @param origin the position corresponding to {@link #ORIGIN}.
+     */
+    public Lattice(LngLat origin)
+    {
+        this.origin = origin;
+    }
+
+    /**
+     * @return the position corresponding to {@link #ORIGIN}.
+     */
+    public LngLat getOrigin()
+    {
+        return origin;
+    }
+
+    /**
+     * @param key     the key of the starting position.
+     * @param bearing the index of the bearing to move in (0 to {@value BEARINGS} exclusive).
+     * @return the key of the position one move away, or {@link #NO_KEY} if it cannot be represented.
+     */
+    public static long neighbour(long key, int bearing)
+    {
+        return offset(key, STEP_I[bearing], STEP_J[bearing]);
+    }
+
+    /**
+     * @param key     the key of the position reached.
+     * @param bearing the index of the bearing it was reached in.
+     * @return the key of the position one move back, i.e. the inverse of {@link #neighbour(long, int)}; or
+     * {@link #NO_KEY} if it cannot be represented.
+     */
+    public static long predecessor(long key, int bearing)
+    {
+        return offset(key, -STEP_I[bearing], -STEP_J[bearing]);
+    }
+
+    /**
+     * @param key the key of the starting position.
+     * @param di  the offset to apply along the longitude axis (in quanta).
+     * @param dj  the offset to apply along the latitude axis (in quanta).
+     * @return the key of the offset position, or {@link #NO_KEY} if it cannot be represented.
+     */
+    public static long offset(long key, long di, long dj)
+    {
+        final long i = i(key) + di;
+        final long j = j(key) + dj;
+        if (Math.abs(i) > MAX_OFFSET || Math.abs(j) > MAX_OFFSET) return NO_KEY;
+
+        return pack((int) i, (int) j);
+    }
+
+    /**
+     * @param i the offset along the longitude axis (in quanta).
+     * @param j the offset along the latitude axis (in quanta).
+     * @return the packed key.
+     */
+    public static long pack(int i, int j)
+    {
+        return ((long) (i + BIAS) << 31) | (j + BIAS);
+    }
+
+    /**
+     * @return the offset of the given key along the longitude axis (in quanta).
+     */
+    public static int i(long key)
+    {
+        return (int) ((key >>> 31) & FIELD_MASK) - BIAS;
+    }
+
+    /**
+     * @return the offset of the given key along the latitude axis (in quanta).
+     */
+    public static int j(long key)
+    {
+        return (int) (key & FIELD_MASK) - BIAS;
+    }
+
+    /**
+     * @return the angle (in degrees) of the given bearing index.
+     */
+    public static double angleOf(int bearing)
+    {
+        return bearing * LngLatHandler.ANGLE_MULTIPLE;
+    }
+
+    /**
+     * @return the index of the bearing with the given angle (in degrees), or -1 if the angle is not one of the
+     * {@value BEARINGS} bearings (e.g. a hover).
+     */
+    public static int bearingOf(double angle)
+    {
+        if (angle < 0 || angle >= 360 || angle % LngLatHandler.ANGLE_MULTIPLE != 0) return -1;
+        return (int) (angle / LngLatHandler.ANGLE_MULTIPLE);
+    }
+
+    /**
+     * @return the longitude of the given key.
+     */
+    public double lng(long key)
+    {
+        return origin.lng() + i(key) * QUANTUM;
+    }
+
+    /**
+     * @return the latitude of the given key.
+     */
+    public double lat(long key)
+    {
+        return origin.lat() + j(key) * QUANTUM;
+    }
+
+    /**
+     * Converts the given key back to a position.
+     *
+     * @param key the key to convert.
+     * @return the position.
+     */
+    public LngLat toLngLat(long key)
+    {
+        return key == ORIGIN ? origin : new LngLat(lng(key), lat(key));
+    }
+
+    /**
+     * Snaps the given position onto the lattice.
+     *
+     * @param position the position to snap.
+     * @return the key of the nearest lattice position, or {@link #NO_KEY} if it cannot be represented.
+     */
+    public long keyOf(LngLat position)
+    {
+        final long i = Math.round((position.lng() - origin.lng()) / QUANTUM);
+        final long j = Math.round((position.lat() - origin.lat()) / QUANTUM);
+
+        return offset(ORIGIN, i, j);
+    }
+}
@@ -0,0 +1,242 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import java.util.Arrays;
+
+/**
+ * Represents the set of nodes generated during a search, keyed by their (packed) {@link Lattice} position.
+ * <p>
+ * Each node is assigned a dense id (0, 1, 2, ...) in order of insertion, and its properties are held in parallel
+ * primitive arrays rather than individual node objects. Ids are resolved from keys through an
+ * open-addressing (linear probing) table, such that neither keys nor nodes need to be boxed.
+ * <p>
+ * The store is reusable: {@link #clear()} empties it while retaining the allocated capacity.
+ */
+public class NodeStore
+{
+    /**
+     * Returned by {@link #find(long)} if the key is not held.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * The parent of a node without a previous node (the starting node).
+     */
+    public static final int NO_PARENT = -1;
+
+    /**
+     * The bearing of a node that was not reached through a move (the drone is hovering).
+     */
+    public static final byte NO_BEARING = -1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // [table] id + 1 of the node held in each slot (0 → empty slot).
+    private int[] slots;
+    private int mask;
+    private int shift;
+
+    // [nodes] indexed by id.
+    private long[] keys;
+    private double[] routeScores;
+    private double[] estimatedScores; // [fScore] (the route score plus the estimate to the destination)
+    private int[] parents;
+    private byte[] bearings;
+    private int size;
+
+    /**
+     * Constructs an empty store.
+     */
+    public NodeStore()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param capacity the number of nodes to allocate room for; the store grows as needed.
+     */
+    public NodeStore(int capacity)
+    {
+        capacity = Math.max(capacity, 2);
+        allocateNodes(capacity);
+        allocateSlots(Integer.highestOneBit(capacity - 1) << 2);
+    }
+
+    /**
+     * @return the number of nodes held.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param key the key to look up.
+     * @return the id of the node held under the given key, or {@link #NOT_FOUND}.
+     */
+    public int find(long key)
+    {
+        int slot = slotOf(key);
+        while (true)
+        {
+            final int entry = slots[slot];
+            if (entry == 0) return NOT_FOUND;
+            if (keys[entry - 1] == key) return entry - 1;
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds a node under the given key; the node starts off unreachable (infinite scores) and without parent.
+     * <p>
+     * (i) The key is expected not to be held yet, see {@link #find(long)}.
+     *
+     * @param key the key of the node.
+     * @return the id of the new node.
+     */
+    public int add(long key)
+    {
+        if (size == keys.length) allocateNodes(keys.length * 2);
+        // Keep the table's load factor at or below 0.5.
+        if ((size + 1) * 2 > slots.length) allocateSlots(slots.length * 2);
+
+        final int id = size++;
+        keys[id] = key;
+        routeScores[id] = Double.POSITIVE_INFINITY;
+        estimatedScores[id] = Double.POSITIVE_INFINITY;
+        parents[id] = NO_PARENT;
+        bearings[id] = NO_BEARING;
+        insert(id);
+
+        return id;
+    }
+
+    /**
+     * Removes every node, retaining the allocated capacity.
+     */
+    public void clear()
+    {
+        // (i) A table grown by a large search is mostly empty after a small one; only the occupied slots are then
+        //     emptied, rather than the whole table.
+        if (size * 8 < slots.length)
+        {
+            for (int id = 0; id < size; id++)
+            {
+                int slot = slotOf(keys[id]);
+                while (slots[slot] != id + 1) slot = (slot + 1) & mask;
+                slots[slot] = 0;
+            }
+        } else
+        {
+            Arrays.fill(slots, 0);
+        }
+        size = 0;
+    }
+
+    public long getKey(int id)
+    {
+        return keys[id];
+    }
+
+    public double getRouteScore(int id)
+    {
+        return routeScores[id];
+    }
+
+    public void setRouteScore(int id, double routeScore)
+    {
+        routeScores[id] = routeScore;
+    }
+
+    public double getEstimatedScore(int id)
+    {
+        return estimatedScores[id];
+    }
+
+    public void setEstimatedScore(int id, double estimatedScore)
+    {
+        estimatedScores[id] = estimatedScore;
+    }
+
+    public int getParent(int id)
+    {
+        return parents[id];
+    }
+
+    /**
+     * Sets the previous node of the given node, along with the bearing of the move in between.
+     */
+    public void setParent(int id, int parent, int bearing)
+    {
+        parents[id] = parent;
+        bearings[id] = (byte) bearing;
+    }
+
+    /**
+     * @return the index of the bearing through which the node was reached, or {@link #NO_BEARING}.
+     */
+    public byte getBearing(int id)
+    {
+        return bearings[id];
+    }
+
+    /**
+     * @return the number of moves from the given node back to the node without parent.
+     */
+    public int depthOf(int id)
+    {
+        int depth = 0;
+        for (int parent = parents[id]; parent != NO_PARENT; parent = parents[parent]) depth++;
+        return depth;
+    }
+
+    /**
+     * Places the given node in the first free slot of its probe sequence.
+     */
+    private void insert(int id)
+    {
+        int slot = slotOf(keys[id]);
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = id + 1;
+    }
+
+    /**
+     * @return the home slot of the given key (Fibonacci hashing).
+     */
+    private int slotOf(long key)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void allocateNodes(int capacity)
+    {
+        if (keys == null)
+        {
+            keys = new long[capacity];
+            routeScores = new double[capacity];
+            estimatedScores = new double[capacity];
+            parents = new int[capacity];
+            bearings = new byte[capacity];
+            return;
+        }
+
+        keys = Arrays.copyOf(keys, capacity);
+        routeScores = Arrays.copyOf(routeScores, capacity);
+        estimatedScores = Arrays.copyOf(estimatedScores, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        bearings = Arrays.copyOf(bearings, capacity);
+    }
+
+    /**
+     * (Re-)allocates the table with the given (power of two) capacity, and re-inserts every node.
+     */
+    private void allocateSlots(int capacity)
+    {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        for (int id = 0; id < size; id++) insert(id);
+    }
+}
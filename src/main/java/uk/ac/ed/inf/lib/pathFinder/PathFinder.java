@@ -1,14 +1,37 @@
 package uk.ac.ed.inf.lib.pathFinder;
 
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+import uk.ac.ed.inf.lib.airspace.OccupancyRaster;
+import uk.ac.ed.inf.lib.airspace.ReachabilityMap;
 
+import java.time.Duration;
 import java.util.*;
 
+/**
+ * Represents a {@link IPathFinder} performing an A* search over the move lattice, see {@link Lattice}.
+ * <p>
+ * (i) Searches keep their state in the arena of their own thread (see {@link SearchArena}), and read the no-fly zones
+ * from an immutable snapshot (see {@link CompiledAirspace}); a single instance can therefore serve any number of
+ * concurrent searches, even while the zones are being replaced.
+ */
 public class PathFinder implements IPathFinder
 {
-    final private long startTime;
+    // [anytime] the heuristic weights of successive iterations, ending with the unweighted (optimal) search.
+    private static final double[] ANYTIME_WEIGHTS = {3, 2, 1.5, 1.25, 1};
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    /**
+     * The number of nodes a search expands at most by default, see {@link #setMaxExpansions(int)}.
+     */
+    public static final int DEFAULT_MAX_EXPANSIONS = 250_000;
+
+    // (i) The distance by which the search domain extends past the zones and both positions; see `Domain`.
+    private static final double DOMAIN_MARGIN = 4 * SystemConstants.DRONE_MOVE_DISTANCE;
 
     /**
      * The implementation class is preferred over the interface as it provides additional context; this is due to the
@@ -18,17 +41,186 @@ public class PathFinder implements IPathFinder
      */
     final private LngLatHandler lngLatHandler;
 
-    private NamedRegion[] noFlyZones;
+    // (i) Every search reads the airspace once, and runs to completion on that snapshot; see CompiledAirspace.
+    private volatile CompiledAirspace airspace;
+    private volatile boolean useRaster;
+    private volatile boolean bidirectional;
+    private volatile Heuristic heuristic = Heuristic.EUCLIDEAN;
+    private volatile CompiledAirspace centralArea; // (null unless the central area rule is set)
+    private volatile int maxExpansions = DEFAULT_MAX_EXPANSIONS;
+    private volatile boolean checkSegments;
 
     public PathFinder()
     {
-        this.startTime = System.nanoTime();
         this.lngLatHandler = new LngLatHandler();
+        this.airspace = CompiledAirspace.EMPTY;
+    }
+
+    /**
+     * Sets the no-fly zones to avoid, and compiles them into a new airspace snapshot.
+     * <p>
+     * (i) Searches in flight finish on the previous snapshot; later searches use the new one.
+     *
+     * @param noFlyZones the no-fly zones; null if there are none.
+     * @throws IllegalArgumentException if any zone is not a closed polygon (min. 3 vertices).
+     */
+    public void setNoFlyZones(NamedRegion[] noFlyZones) throws IllegalArgumentException
+    {
+        setAirspace(CompiledAirspace.compile(noFlyZones, useRaster));
+    }
+
+    /**
+     * Sets the airspace snapshot to search in, such that a snapshot can be compiled once and shared between path
+     * finders.
+     *
+     * @param airspace the compiled airspace; its raster is compiled|dropped to match
+     *                 {@link #setOccupancyRaster(boolean)}.
+     * @throws IllegalArgumentException if the airspace is null.
+     */
+    public synchronized void setAirspace(CompiledAirspace airspace) throws IllegalArgumentException
+    {
+        if (airspace == null)
+            throw new IllegalArgumentException("airspace cannot be null");
+
+        this.airspace = airspace.withRaster(useRaster);
+    }
+
+    /**
+     * @return the airspace snapshot currently searched in.
+     */
+    public CompiledAirspace getAirspace()
+    {
+        return airspace;
+    }
+
+    /**
+     * Enables|disables the precompiled occupancy raster of the no-fly zones (disabled by default).
+     * <p>
+     * When enabled, most boundary checks are answered by a single lookup, at the cost of rasterising the zones
+     * whenever they are set; see {@link OccupancyRaster}.
+     *
+     * @param enabled true to use the raster, false otherwise.
+     */
+    public synchronized void setOccupancyRaster(boolean enabled)
+    {
+        this.useRaster = enabled;
+        this.airspace = airspace.withRaster(enabled);
+    }
+
+    /**
+     * Sets the central area, and with it the rule that a drone entering the central area cannot leave it again.
+     * <p>
+     * The rule is enforced as part of the search, rather than by checking routes once found: each node carries an
+     * additional state bit (see {@link Lattice#STATE_FLAG}), set once the drone has moved into the central area from
+     * outside of it. Moves out of the central area are not generated from flagged nodes, and the same position may be
+     * held once per state. The central area is compiled along with its occupancy raster, such that the rule costs a
+     * single lookup per move for most positions; see {@link CompiledAirspace}.
+     * <p>
+     * (i) A route starting within the central area has not entered it; see {@link Routes#keepsToCentralArea}.
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    @Override
+    public void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException
+    {
+        this.centralArea = centralArea == null ? null : CompiledAirspace.compile(new NamedRegion[]{centralArea}, true);
+    }
+
+    /**
+     * Enables|disables the bidirectional search mode (disabled by default).
+     * <p>
+     * When enabled, frontiers are grown from both positions until they meet, see
+     * {@link #findRouteBidirectional(CompiledAirspace, SearchStats.Counter, LngLat, LngLat, boolean, double)}. The
+     * first meeting is not guaranteed to make the shortest route; routes are reported with their bound accordingly
+     * (see {@link Result#getSuboptimalityBound()}).
+     * <p>
+     * (i) The central area rule only holds in the direction of travel; searches fall back to a single frontier while
+     * it is set, see {@link #setCentralArea(NamedRegion)}.
+     *
+     * @param enabled true to search bidirectionally, false otherwise.
+     */
+    public void setBidirectional(boolean enabled)
+    {
+        this.bidirectional = enabled;
+    }
+
+    /**
+     * Sets the heuristic estimating the remaining score of a node ({@link Heuristic#EUCLIDEAN} by default).
+     *
+     * @param heuristic the heuristic.
+     * @throws IllegalArgumentException if the heuristic is null.
+     */
+    public void setHeuristic(Heuristic heuristic) throws IllegalArgumentException
+    {
+        if (heuristic == null)
+            throw new IllegalArgumentException("heuristic cannot be null");
+
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * @return the heuristic estimating the remaining score of a node.
+     */
+    public Heuristic getHeuristic()
+    {
+        return heuristic;
+    }
+
+    /**
+     * Sets the number of nodes a search expands at most ({@value DEFAULT_MAX_EXPANSIONS} by default), after which it
+     * is given up (see {@link FailureReason#EXPANSION_LIMIT}).
+     * <p>
+     * (i) Destinations walled off by the zones are ruled out before searching, and searches are confined to a domain
+     * around the zones and both positions; the limit only bounds the searches which remain hopeless regardless (e.g.
+     * through a passage too narrow for the lattice).
+     *
+     * @param maxExpansions the maximum number of nodes expanded.
+     * @throws IllegalArgumentException if the number is not positive.
+     */
+    public void setMaxExpansions(int maxExpansions) throws IllegalArgumentException
+    {
+        if (maxExpansions <= 0)
+            throw new IllegalArgumentException("maximum number of expansions must be positive");
+
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Enables|disables the segment check of every move (disabled by default).
+     * <p>
+     * By default, a move is only rejected if it ends within a no-fly zone, such that it may still clip the corner of
+     * one on its way. When enabled, moves crossing any zone's edge are rejected as well; each check only tests the
+     * edges near the move, see {@link NoFlyZoneIndex#crossesEdge(double, double, double, double)}.
+     * <p>
+     * (i) Applies to every mode of the search, and to the straight line tried before it.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     */
+    @Override
+    public void setSegmentCheck(boolean enabled)
+    {
+        this.checkSegments = enabled;
+    }
+
+    @Override
+    public boolean getSegmentCheck()
+    {
+        return checkSegments;
     }
 
-    public void setNoFlyZones(NamedRegion[] noFlyZones)
+    /**
+     * @return a fingerprint of the path finder's class, heuristic, search mode, segment check and maximum number of
+     * expansions; see {@link IPathFinder#getConfigurationFingerprint()}.
+     */
+    @Override
+    public long getConfigurationFingerprint()
     {
-        this.noFlyZones = noFlyZones;
+        long fingerprint = IPathFinder.super.getConfigurationFingerprint();
+        fingerprint = 31 * fingerprint + heuristic.name().hashCode();
+        fingerprint = 31 * fingerprint + Boolean.hashCode(bidirectional);
+        fingerprint = 31 * fingerprint + Boolean.hashCode(checkSegments);
+        return 31 * fingerprint + maxExpansions;
     }
 
     public Result findRoute(LngLat fromPos, LngLat toPos)
@@ -38,6 +230,32 @@ public class PathFinder implements IPathFinder
         else if (fromPos.equals(toPos))
             throw new IllegalArgumentException("positions cannot be equal");
 
+        final CompiledAirspace airspace = this.airspace;
+        final Result failed = precheck(airspace, fromPos, toPos);
+        if (failed != null) return failed;
+
+        final CompiledAirspace centralArea = this.centralArea;
+        final boolean checkSegments = this.checkSegments;
+        final SearchStats.Counter counter = new SearchStats.Counter();
+
+        // Most routes cross open air: the straight line is tried first, and returned as is if no route can be shorter.
+        // Otherwise, its length bounds the score of the routes worth searching for.
+        final RouteBuilder line = followLine(airspace, centralArea, counter, fromPos, toPos, checkSegments);
+        final int minimumMoves = Heuristic.minimumMoves(fromPos.lng(), fromPos.lat(), toPos.lng(), toPos.lat());
+        if (line != null && line.size() <= minimumMoves) return counter.finish(lineResult(line, toPos));
+        final double upperBound = line == null ?
+                Double.POSITIVE_INFINITY :
+                (line.size() + 0.5) * SystemConstants.DRONE_MOVE_DISTANCE; // (absorbs the rounding of the scores)
+
+        if (bidirectional && centralArea == null)
+        {
+            final Result result = findRouteBidirectional(airspace, counter, fromPos, toPos, checkSegments, upperBound);
+            // (i) The frontiers may meet on a route longer than the straight line; the shorter of both is returned.
+            final boolean lineShorter =
+                    line != null && (!result.getOk() || line.size() < result.getRoute().size() - 2);
+            return counter.finish(lineShorter ? lineResult(line, toPos) : result);
+        }
+
         // [abstract]
         // This method finds the shortest path between the two positions using the A* algorithm.
         //
@@ -51,56 +269,106 @@ public class PathFinder implements IPathFinder
         //       using pre-defined ones.
 
         final IPathFinder.Result result = new Result();
+        final Heuristic heuristic = this.heuristic;
+        final int maxExpansions = this.maxExpansions;
+
+        // The search is confined to the domain around the zones and both positions, such that it does not roam the
+        // (unbounded) lattice if no route can be found.
+        final Domain domain = Domain.of(airspace, centralArea, fromPos, toPos);
 
-        // A priority queue which sorts nodes by their estimated score (fScore).
-        final Queue<INode> openSet = new PriorityQueue<>();
-        // A map of all nodes visited|generated so far.
-        final Map<LngLat, INode> allNodes = new HashMap<>();
+        // Every position is resolved onto the lattice spanned by the drone's moves from the starting position, such
+        // that the same position reached through a different ordering of moves is only ever considered once.
+        final Lattice lattice = new Lattice(fromPos);
+
+        // (i) The structures below are reused from the thread's previous search, see SearchArena.
+        final SearchArena arena = SearchArena.acquire();
+        // A priority queue of node ids which sorts nodes by their estimated score (fScore); each node is queued at
+        // most once, and flagged as closed once expanded.
+        final IndexedMinHeap openSet = arena.openSet;
+        // All nodes visited|generated so far, keyed by their (packed) lattice position.
+        // (i) `INode` objects are only created for the nodes constituting the route, once it has been found.
+        final NodeStore allNodes = arena.nodes;
+
+        final double toLng = toPos.lng();
+        final double toLat = toPos.lat();
 
         // Begin the calculation by adding the starting position to the queue.
-        INode current = new Node(null,
-                new INode.Direction(fromPos, getTicksSinceStart()),
-                0d,
-                lngLatHandler.distanceTo(fromPos, toPos));
-        openSet.add(current);
-        allNodes.put(fromPos, current);
+        final int startId = allNodes.add(Lattice.ORIGIN);
+        allNodes.setRouteScore(startId, 0d);
+        allNodes.setEstimatedScore(startId, heuristic.estimate(fromPos.lng(), fromPos.lat(), toLng, toLat));
+        openSet.push(startId, allNodes.getEstimatedScore(startId));
+        counter.generated++;
 
         try
         {
             // While there are nodes to consider:
+            // (i) Nodes are queued at most once (see IndexedMinHeap), such that no stale entries are ever polled.
             while (!openSet.isEmpty())
             {
-                current = openSet.poll();
-                final LngLat currentPos = current.getDirection().position();
+                if (counter.expanded >= maxExpansions)
+                {
+                    result.setFailureReason(FailureReason.EXPANSION_LIMIT);
+                    break;
+                }
+
+                counter.open(openSet.size());
+                final int currentId = openSet.poll();
+                final long currentKey = allNodes.getKey(currentId);
+                counter.expanded++;
+                final boolean currentInside = isWithinCentralArea(centralArea, counter, lattice, currentKey);
 
                 // Check if the current node is close to the destination; if so, we have found a path.
                 // Note the use of `isCloseTo` rather than `equals` to account for possible inaccuracies in the position
                 // calculation.
-                if (lngLatHandler.isCloseTo(currentPos, toPos))
+                if (lngLatHandler.isCloseTo(lattice.lng(currentKey), lattice.lat(currentKey), toLng, toLat))
                 {
                     result.setOK(true);
-                    result.setRoute(new INode.Direction(toPos, getTicksSinceStart()), current);
+                    result.setRoute(buildRoute(lattice, allNodes, currentId, toPos));
                     break;
                 }
 
                 // Otherwise, generate 16 neighbours (one for each of the 16 possible bearings) and keep searching.
-                for (INode.Direction nextDir : getNeighbours(currentPos))
+                for (int bearing = 0; bearing < Lattice.BEARINGS; bearing++)
                 {
-                    final LngLat nextPos = nextDir.position();
-                    final INode next = allNodes.getOrDefault(nextPos, new Node(nextDir));
-                    allNodes.put(nextPos, next);
+                    final long nextKey =
+                            centralAreaState(centralArea, counter, lattice, currentKey, currentInside, bearing);
+                    if (nextKey == Lattice.NO_KEY) continue;
+
+                    // (i) A node already known has previously passed the boundary check; only new positions need to
+                    //     be tested against the no-fly zones.
+                    int nextId = allNodes.find(nextKey);
+                    if (nextId == NodeStore.NOT_FOUND)
+                    {
+                        if (!isWithinBoundary(airspace, domain, counter, lattice.lng(nextKey), lattice.lat(nextKey)))
+                            continue;
+                        nextId = allNodes.add(nextKey);
+                        counter.generated++;
+                    } else if (openSet.isClosed(nextId))
+                    {
+                        continue; // (already expanded)
+                    }
 
-                    final double newScore =
-                            current.getRouteScore() + lngLatHandler.distanceTo(currentPos, next.getDirection().position());
+                    // (i) Every move covers the same distance, regardless of its bearing.
+                    final double newScore = allNodes.getRouteScore(currentId) + SystemConstants.DRONE_MOVE_DISTANCE;
 
                     // If the newly calculated score is better than the previously known one, the node's properties are
-                    // updated accordingly, and added to the queue as to be considered in a later iteration.
-                    if (newScore < next.getRouteScore())
+                    // updated accordingly, and (re-)queued as to be considered in a later iteration.
+                    if (newScore < allNodes.getRouteScore(nextId))
                     {
-                        next.setPrevious(current);
-                        next.setRouteScore(newScore); // [gScore]
-                        next.setEstimatedScore(newScore + lngLatHandler.distanceTo(nextPos, toPos)); // [fScore]
-                        openSet.add(next);
+                        final double lng = lattice.lng(nextKey);
+                        final double lat = lattice.lat(nextKey);
+                        // (i) Nodes which cannot lead to a route shorter than the straight line's are never queued.
+                        if (line != null &&
+                                newScore + admissibleEstimate(heuristic, lng, lat, toLng, toLat) > upperBound) continue;
+                        // (i) Unlike its ending position, the segment of a move is checked for every parent.
+                        if (checkSegments && crossesBoundary(airspace, counter, lattice, currentKey, nextKey)) continue;
+
+                        final double estimatedScore = newScore + heuristic.estimate(lng, lat, toLng, toLat);
+
+                        allNodes.setParent(nextId, currentId, bearing); // (the bearing changes along with the parent)
+                        allNodes.setRouteScore(nextId, newScore); // [gScore]
+                        allNodes.setEstimatedScore(nextId, estimatedScore); // [fScore]
+                        openSet.push(nextId, estimatedScore);
                     }
                 }
             }
@@ -109,50 +377,628 @@ public class PathFinder implements IPathFinder
             final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
             final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
             throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        } finally
+        {
+            arena.close();
         }
 
+        // (i) The straight line is only ever pruned against, not searched for; it stands in if no route was found.
+        if (!result.getOk() && line != null) return counter.finish(lineResult(line, toPos));
+        if (!result.getOk() && result.getFailureReason() == null) result.setFailureReason(FailureReason.EXHAUSTED);
+        return counter.finish(result);
+    }
+
+    /**
+     * Follows the straight line between both positions, alternating between the two bearings enclosing its direction
+     * (see {@link RouteBuilder#followLine(LngLat, boolean)}).
+     *
+     * @return the route along the line, or null if it crosses a no-fly zone or breaks the central area rule.
+     */
+    private static RouteBuilder followLine(CompiledAirspace airspace, CompiledAirspace centralArea,
+                                           SearchStats.Counter counter, LngLat fromPos, LngLat toPos,
+                                           boolean checkSegments)
+    {
+        final RouteBuilder line = new RouteBuilder(fromPos, airspace.getIndex(), checkSegments);
+        final boolean reached = line.followLine(toPos, true);
+        final int moves = reached ? line.size() : line.size() + 1;
+        if (!airspace.isEmpty()) counter.containmentChecks += checkSegments ? 2L * moves : moves;
+
+        if (!reached || !line.isCloseTo(toPos)) return null;
+        if (centralArea != null && !Routes.keepsToCentralArea(line.build(toPos), centralArea)) return null;
+        return line;
+    }
+
+    /**
+     * @return the successful result of the route along the straight line, see
+     * {@link #followLine(CompiledAirspace, CompiledAirspace, SearchStats.Counter, LngLat, LngLat, boolean)}; only
+     * reported as the shortest if no route can be shorter.
+     */
+    private static Result lineResult(RouteBuilder line, LngLat toPos)
+    {
+        final Result result = new Result();
+        result.setOK(true);
+        result.setRoute(line.build(toPos));
+        result.setSuboptimalityBound(Routes.suboptimalityBound(result.getRoute()));
         return result;
     }
 
     /**
-     * @param position the initial position to find the neighbours of.
-     * @return the {@value LngLatHandler#BEARING_COUNT} neighbours of the given position.
+     * Performs an anytime (ARA*) search: a first route is found quickly with a heavily weighted heuristic, and then
+     * improved with decreasing weights until the budget runs out or the shortest route is found.
+     * <p>
+     * Each iteration reuses the nodes of the previous ones: nodes whose score improved after being expanded are
+     * re-queued rather than searched for again. The result reports the suboptimality bound of the best route found
+     * when the search returns.
+     * <p>
+     * (i) The budget is only enforced once a route has been found, such that a valid route is always returned if one
+     * exists (within the maximum number of expansions, see {@link #setMaxExpansions(int)}; a route found by then is
+     * returned along with its bound). The bidirectional mode does not apply.
+     *
+     * @param fromPos the starting position.
+     * @param toPos   the ending position.
+     * @param budget  the time after which the search should return; null if unbounded.
+     * @return the result of the search.
      */
-    private List<INode.Direction> getNeighbours(LngLat position)
+    @Override
+    public Result findRoute(LngLat fromPos, LngLat toPos, Duration budget)
     {
-        final List<INode.Direction> neighbours = new ArrayList<>();
-        for (int i = 0; i < LngLatHandler.BEARING_COUNT; i++)
+        if (fromPos == null || toPos == null)
+            throw new IllegalArgumentException("positions cannot be null");
+        else if (fromPos.equals(toPos))
+            throw new IllegalArgumentException("positions cannot be equal");
+
+        final long deadline = budget == null ? Long.MAX_VALUE : System.nanoTime() + budget.toNanos();
+        final CompiledAirspace airspace = this.airspace;
+        final Result failed = precheck(airspace, fromPos, toPos);
+        if (failed != null) return failed;
+
+        final Result result = new Result();
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        final CompiledAirspace centralArea = this.centralArea;
+        final Heuristic heuristic = this.heuristic;
+        final int maxExpansions = this.maxExpansions;
+        final Domain domain = Domain.of(airspace, centralArea, fromPos, toPos);
+
+        final Lattice lattice = new Lattice(fromPos);
+        final SearchArena arena = SearchArena.acquire();
+        final IndexedMinHeap openSet = arena.openSet;
+        final NodeStore allNodes = arena.nodes;
+        final BitSet inconsistent = arena.flags; // (improved after being expanded; re-queued in the next iteration)
+        final boolean checkSegments = this.checkSegments;
+        final double toLng = toPos.lng();
+        final double toLat = toPos.lat();
+
+        final int startId = allNodes.add(Lattice.ORIGIN);
+        allNodes.setRouteScore(startId, 0d);
+        final double startEstimate = admissibleEstimate(heuristic, fromPos.lng(), fromPos.lat(), toLng, toLat);
+        allNodes.setEstimatedScore(startId, startEstimate); // [fScore]
+
+        counter.generated++;
+
+        int goalId = -1; // (the best node close to the destination found so far)
+        double weight = ANYTIME_WEIGHTS[0];
+        openSet.push(startId, weight * startEstimate);
+        if (lngLatHandler.isCloseTo(fromPos.lng(), fromPos.lat(), toLng, toLat)) goalId = startId;
+
+        try
         {
-            final double angle = i * LngLatHandler.ANGLE_MULTIPLE;
-            final LngLat nextPosition = lngLatHandler.nextPosition(position, angle);
-            if (isWithinBoundary(nextPosition))
-                neighbours.add(new INode.Direction(nextPosition, angle, getTicksSinceStart()));
+            int expansions = 0;
+            for (int iteration = 0; iteration < ANYTIME_WEIGHTS.length; iteration++)
+            {
+                weight = ANYTIME_WEIGHTS[iteration];
+                if (iteration > 0)
+                {
+                    // Re-queue the open and inconsistent nodes under the new weight, and re-open every node; the
+                    // estimate of each is recovered from its [fScore] and [gScore].
+                    final int[] queued = openSet.toArray();
+                    openSet.clear();
+                    counter.stalePops += inconsistent.cardinality(); // (expanded again under the new weight)
+                    for (int id : queued) inconsistent.set(id);
+                    for (int id = inconsistent.nextSetBit(0); id >= 0; id = inconsistent.nextSetBit(id + 1))
+                    {
+                        final double routeScore = allNodes.getRouteScore(id);
+                        openSet.push(id, routeScore + weight * (allNodes.getEstimatedScore(id) - routeScore));
+                    }
+                    inconsistent.clear();
+                }
+
+                // Expand nodes until none can lead to a better route under the current weight.
+                while (!openSet.isEmpty() && (goalId < 0 ||
+                        openSet.priorityOf(openSet.peek()) < allNodes.getRouteScore(goalId)))
+                {
+                    if (goalId >= 0 && ++expansions % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+                        break;
+                    if (counter.expanded >= maxExpansions)
+                    {
+                        result.setFailureReason(FailureReason.EXPANSION_LIMIT);
+                        break;
+                    }
+
+                    counter.open(openSet.size());
+                    final int currentId = openSet.poll();
+                    final long currentKey = allNodes.getKey(currentId);
+                    counter.expanded++;
+                    final boolean currentInside = isWithinCentralArea(centralArea, counter, lattice, currentKey);
+                    for (int bearing = 0; bearing < Lattice.BEARINGS; bearing++)
+                    {
+                        final long nextKey =
+                                centralAreaState(centralArea, counter, lattice, currentKey, currentInside, bearing);
+                        if (nextKey == Lattice.NO_KEY) continue;
+
+                        final double lng = lattice.lng(nextKey);
+                        final double lat = lattice.lat(nextKey);
+                        int nextId = allNodes.find(nextKey);
+                        if (nextId == NodeStore.NOT_FOUND)
+                        {
+                            if (!isWithinBoundary(airspace, domain, counter, lng, lat)) continue;
+                            nextId = allNodes.add(nextKey);
+                            counter.generated++;
+                        }
+
+                        final double newScore = allNodes.getRouteScore(currentId) + SystemConstants.DRONE_MOVE_DISTANCE;
+                        if (newScore >= allNodes.getRouteScore(nextId)) continue;
+                        if (checkSegments && crossesBoundary(airspace, counter, lattice, currentKey, nextKey)) continue;
+
+                        final double estimate = admissibleEstimate(heuristic, lng, lat, toLng, toLat);
+                        allNodes.setParent(nextId, currentId, bearing);
+                        allNodes.setRouteScore(nextId, newScore);
+                        allNodes.setEstimatedScore(nextId, newScore + estimate); // [fScore]
+
+                        // (i) Nodes close to the destination end the route; they are never expanded.
+                        if (lngLatHandler.isCloseTo(lng, lat, toLng, toLat))
+                        {
+                            if (goalId < 0 || newScore < allNodes.getRouteScore(goalId)) goalId = nextId;
+                        } else if (openSet.isClosed(nextId))
+                        {
+                            inconsistent.set(nextId);
+                        } else
+                        {
+                            openSet.push(nextId, newScore + weight * estimate);
+                        }
+                    }
+                }
+
+                if (result.getFailureReason() != null || (goalId >= 0 && System.nanoTime() > deadline)) break;
+            }
+
+            if (goalId < 0 && result.getFailureReason() == null) result.setFailureReason(FailureReason.EXHAUSTED);
+            else if (goalId >= 0)
+            {
+                result.setFailureReason(null); // (the best route found before the limit is returned)
+                result.setOK(true);
+                result.setRoute(buildRoute(lattice, allNodes, goalId, toPos));
+                result.setSuboptimalityBound(
+                        suboptimalityBound(openSet, inconsistent, allNodes, allNodes.getRouteScore(goalId), weight));
+            }
+        } catch (Exception e)
+        {
+            final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
+            final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
+            throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        } finally
+        {
+            arena.close();
+        }
+
+        return counter.finish(result);
+    }
+
+    /**
+     * Computes the suboptimality bound of a route found by the anytime search: the route's score relative to the
+     * lowest (unweighted) estimate [fScore] of any route not yet considered, capped by the last weight used.
+     */
+    private static double suboptimalityBound(IndexedMinHeap openSet, BitSet inconsistent, NodeStore nodes,
+                                             double routeScore, double weight)
+    {
+        double lowestEstimate = Double.POSITIVE_INFINITY;
+        for (int id : openSet.toArray())
+            lowestEstimate = Math.min(lowestEstimate, nodes.getEstimatedScore(id));
+        for (int id = inconsistent.nextSetBit(0); id >= 0; id = inconsistent.nextSetBit(id + 1))
+            lowestEstimate = Math.min(lowestEstimate, nodes.getEstimatedScore(id));
+
+        if (lowestEstimate >= routeScore) return 1; // (no better route remains)
+        return Math.max(1, Math.min(weight, routeScore / lowestEstimate));
+    }
+
+    /**
+     * @return a lower bound of the remaining score from the given position: the distance left to be covered until the
+     * destination is close, or the move count estimate (admissible as is) if selected.
+     */
+    private static double admissibleEstimate(Heuristic heuristic, double lng, double lat, double toLng, double toLat)
+    {
+        if (heuristic == Heuristic.MOVE_COUNT) return heuristic.estimate(lng, lat, toLng, toLat);
+        final double distance = Heuristic.EUCLIDEAN.estimate(lng, lat, toLng, toLat);
+        return Math.max(0, distance - SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+    }
+
+    /**
+     * Finds a path between the two positions by growing two frontiers: one from the starting position towards the
+     * ending position, and one from the ending position towards the starting position.
+     * <p>
+     * The smaller frontier is expanded at each iteration. Each expanded node is compared against the nodes of the
+     * opposite frontier lying close to it (see {@link ProximityGrid}), and the search stops at the first such pair which
+     * can be stitched into a valid route: the forward half's moves, followed by the backward half's moves reversed
+     * (see {@link #stitch(CompiledAirspace, Frontier, int, Frontier, int, LngLat, LngLat, boolean)}).
+     * <p>
+     * (i) As with {@link Routes#reverse(List, NoFlyZoneIndex)}, the reversed half is replayed from the meeting node
+     * rather than the backward node it was found from; the two lie close to each other, which keeps the route's last
+     * move close to the ending position.
+     *
+     * @param counter    the counters of the search; the work of both frontiers is added to them.
+     * @param upperBound the score no route worth finding reaches (e.g. that of the straight line); nodes which cannot
+     *                   lead to a shorter route are not generated.
+     * @return the result of the search; its statistics are left to the caller.
+     */
+    private Result findRouteBidirectional(CompiledAirspace airspace, SearchStats.Counter counter, LngLat fromPos,
+                                          LngLat toPos, boolean checkSegments, double upperBound)
+    {
+        final Result result = new Result();
+        final Heuristic heuristic = this.heuristic;
+        final int maxExpansions = this.maxExpansions;
+        final Domain domain = Domain.of(airspace, null, fromPos, toPos);
+        // (i) Each frontier draws its structures from its own arena of the thread, see SearchArena.
+        final SearchArena forwardArena = SearchArena.acquire();
+        final SearchArena backwardArena = SearchArena.acquire();
+        final Frontier forward = new Frontier(airspace, domain, heuristic, counter, checkSegments, upperBound,
+                forwardArena, fromPos, toPos);
+        final Frontier backward = new Frontier(airspace, domain, heuristic, counter, checkSegments, upperBound,
+                backwardArena, toPos, fromPos);
+
+        try
+        {
+            while (!forward.openSet.isEmpty() && !backward.openSet.isEmpty())
+            {
+                if (counter.expanded >= maxExpansions)
+                {
+                    result.setFailureReason(FailureReason.EXPANSION_LIMIT);
+                    break;
+                }
+
+                final boolean isForward = forward.openSet.size() <= backward.openSet.size();
+                final Frontier current = isForward ? forward : backward;
+                final Frontier opposite = isForward ? backward : forward;
+
+                final int currentId = current.expand();
+                final long currentKey = current.nodes.getKey(currentId);
+                final double lng = current.lattice.lng(currentKey);
+                final double lat = current.lattice.lat(currentKey);
+
+                // Collect the nodes of the opposite frontier close to the expanded node, cheapest pairing first.
+                final List<int[]> meetings = new ArrayList<>();
+                opposite.grid.forEachNear(lng, lat, oppositeId ->
+                {
+                    final long oppositeKey = opposite.nodes.getKey(oppositeId);
+                    if (lngLatHandler.isCloseTo(lng, lat,
+                            opposite.lattice.lng(oppositeKey), opposite.lattice.lat(oppositeKey)))
+                    {
+                        meetings.add(isForward ? new int[]{currentId, oppositeId} : new int[]{oppositeId, currentId});
+                    }
+                });
+                meetings.sort(Comparator.comparingDouble(m ->
+                        forward.nodes.getRouteScore(m[0]) + backward.nodes.getRouteScore(m[1])));
+
+                for (int[] meeting : meetings)
+                {
+                    final List<INode.Direction> route =
+                            stitch(airspace, forward, meeting[0], backward, meeting[1], fromPos, toPos, checkSegments);
+                    if (route == null) continue;
+
+                    result.setOK(true);
+                    result.setRoute(route);
+                    result.setSuboptimalityBound(Routes.suboptimalityBound(route));
+                    return result;
+                }
+            }
+        } catch (Exception e)
+        {
+            final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
+            final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
+            throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        } finally
+        {
+            forwardArena.close();
+            backwardArena.close();
         }
-        return neighbours;
+
+        if (result.getFailureReason() == null) result.setFailureReason(FailureReason.EXHAUSTED);
+        return result;
+    }
+
+    /**
+     * Joins the forward path to the given forward node with the (reversed) backward path to the given backward node.
+     *
+     * @return the route, or null if the joined moves enter a no-fly zone or do not end close to the ending position.
+     */
+    private List<INode.Direction> stitch(CompiledAirspace airspace, Frontier forward, int forwardId,
+                                         Frontier backward, int backwardId, LngLat fromPos, LngLat toPos,
+                                         boolean checkSegments)
+    {
+        final RouteBuilder route = new RouteBuilder(fromPos, airspace.getIndex(), checkSegments);
+
+        final int[] chain = new int[forward.nodes.depthOf(forwardId)];
+        for (int i = chain.length - 1, id = forwardId; i >= 0; i--, id = forward.nodes.getParent(id))
+            chain[i] = forward.nodes.getBearing(id);
+        for (int bearing : chain)
+            if (!route.move(bearing)) return null;
+
+        for (int id = backwardId; backward.nodes.getParent(id) != NodeStore.NO_PARENT; id = backward.nodes.getParent(id))
+        {
+            if (!route.move((backward.nodes.getBearing(id) + Lattice.BEARINGS / 2) % Lattice.BEARINGS)) return null;
+        }
+
+        return route.isCloseTo(toPos) ? route.build(toPos) : null;
+    }
+
+    /**
+     * Creates the route leading from the starting node to the given node, and on to the ending position.
+     * <p>
+     * (i) The directions are written straight into a presized array, walking the parents back from the given node;
+     * each is indexed by its position in the route.
+     *
+     * @param lattice the lattice the nodes' keys belong to.
+     * @param nodes   the nodes generated during the search.
+     * @param id      the id of the last node before the ending position.
+     * @param toPos   the ending position, hovered at once reached.
+     * @return the route.
+     */
+    private static List<INode.Direction> buildRoute(Lattice lattice, NodeStore nodes, int id, LngLat toPos)
+    {
+        final int depth = nodes.depthOf(id);
+        final INode.Direction[] route = new INode.Direction[depth + 2];
+
+        // [requirement] the drone must hover for one move at its destination (restaurant or when delivery to AT).
+        route[depth + 1] = new INode.Direction(toPos, depth + 1);
+        for (int i = depth; i >= 0; i--, id = nodes.getParent(id))
+        {
+            final LngLat position = lattice.toLngLat(nodes.getKey(id));
+            final byte bearing = nodes.getBearing(id);
+            route[i] = bearing == NodeStore.NO_BEARING ?
+                    new INode.Direction(position, i) :
+                    new INode.Direction(position, Lattice.angleOf(bearing), i);
+        }
+        return Arrays.asList(route);
     }
 
     /**
      * Checks if the given position is within any of the no-fly zones.
+     * <p>
+     * (i) Only the zones near the position are considered, see {@link NoFlyZoneIndex}; if enabled, the raster answers
+     * first, see {@link OccupancyRaster}.
+     *
+     * @param airspace the airspace snapshot of the search.
+     * @param domain   the domain of the search.
+     * @param counter  the counters of the search.
+     * @param lng      the longitude of the position to check.
+     * @param lat      the latitude of the position to check.
+     * @return true if the position is within the domain, and not within the no-fly zones; false otherwise.
+     */
+    private static boolean isWithinBoundary(CompiledAirspace airspace, Domain domain, SearchStats.Counter counter,
+                                            double lng, double lat)
+    {
+        if (!domain.contains(lng, lat)) return false;
+
+        counter.containmentChecks++;
+        return !airspace.contains(lng, lat);
+    }
+
+    /**
+     * Checks if the move between the two nodes crosses any of the no-fly zones' edges, see
+     * {@link #setSegmentCheck(boolean)}.
+     *
+     * @param airspace the airspace snapshot of the search.
+     * @param counter  the counters of the search.
+     * @param lattice  the lattice the nodes' keys belong to.
+     * @param fromKey  the key of the node moved from.
+     * @param toKey    the key of the node moved to.
+     * @return true if the move crosses an edge, false otherwise.
+     */
+    static boolean crossesBoundary(CompiledAirspace airspace, SearchStats.Counter counter, Lattice lattice,
+                                   long fromKey, long toKey)
+    {
+        counter.containmentChecks++;
+        return airspace.crosses(lattice.lng(fromKey), lattice.lat(fromKey), lattice.lng(toKey), lattice.lat(toKey));
+    }
+
+    /**
+     * Rules out the searches which cannot succeed: either position lies within a no-fly zone, or the destination is
+     * walled off from the starting position (see {@link ReachabilityMap}).
+     * <p>
+     * (i) Each check costs no more than a few lookups, whereas a search for an unreachable destination would only
+     * stop once it has covered its whole domain.
      *
-     * @param position the position to check.
-     * @return true if the position is not within the no-fly zones, false otherwise.
+     * @return the failed result, or null if the search may succeed.
      */
-    private boolean isWithinBoundary(LngLat position)
+    static Result precheck(CompiledAirspace airspace, LngLat fromPos, LngLat toPos)
     {
-        if (noFlyZones == null) return true;
+        if (airspace.isEmpty()) return null;
+
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        counter.containmentChecks += 2;
+
+        FailureReason reason = null;
+        if (airspace.contains(fromPos)) reason = FailureReason.ORIGIN_IN_NO_FLY_ZONE;
+        else if (airspace.contains(toPos)) reason = FailureReason.DESTINATION_IN_NO_FLY_ZONE;
+        else if (!airspace.getReachability().isReachable(fromPos.lng(), fromPos.lat(), toPos.lng(), toPos.lat(),
+                SystemConstants.DRONE_IS_CLOSE_DISTANCE)) reason = FailureReason.UNREACHABLE;
+        if (reason == null) return null;
+
+        final Result result = new Result();
+        result.setFailureReason(reason);
+        return counter.finish(result);
+    }
 
-        for (NamedRegion noFlyZone : noFlyZones)
+    /**
+     * Represents the bounds a search is confined to: those of the no-fly zones, the central area (if set) and both
+     * positions, extended by a margin of a few moves.
+     * <p>
+     * (i) Past the zones' bounds, the space is free: a shortest route never strays further than the margin from
+     * them, or from the straight line between both positions.
+     */
+    record Domain(double minLng, double minLat, double maxLng, double maxLat)
+    {
+        static Domain of(CompiledAirspace airspace, CompiledAirspace centralArea, LngLat fromPos, LngLat toPos)
         {
-            if (lngLatHandler.isInRegion(position, noFlyZone)) return false;
+            double minLng = Math.min(fromPos.lng(), toPos.lng());
+            double minLat = Math.min(fromPos.lat(), toPos.lat());
+            double maxLng = Math.max(fromPos.lng(), toPos.lng());
+            double maxLat = Math.max(fromPos.lat(), toPos.lat());
+            for (CompiledAirspace bounds : new CompiledAirspace[]{airspace, centralArea})
+            {
+                if (bounds == null || bounds.isEmpty()) continue;
+
+                final NoFlyZoneIndex index = bounds.getIndex();
+                minLng = Math.min(minLng, index.getMinLng());
+                minLat = Math.min(minLat, index.getMinLat());
+                maxLng = Math.max(maxLng, index.getMaxLng());
+                maxLat = Math.max(maxLat, index.getMaxLat());
+            }
+
+            return new Domain(minLng - DOMAIN_MARGIN, minLat - DOMAIN_MARGIN,
+                    maxLng + DOMAIN_MARGIN, maxLat + DOMAIN_MARGIN);
+        }
+
+        boolean contains(double lng, double lat)
+        {
+            return lng >= minLng && lng <= maxLng && lat >= minLat && lat <= maxLat;
         }
-        return true;
     }
 
     /**
-     * @return the number of nanoseconds since the start of the program.
+     * @param centralArea the compiled central area; null if the rule is not set.
+     * @return true if the rule is set, and the given node is within the central area; false otherwise.
      */
-    private long getTicksSinceStart()
+    private static boolean isWithinCentralArea(CompiledAirspace centralArea, SearchStats.Counter counter,
+                                               Lattice lattice, long key)
     {
-        return System.nanoTime() - startTime;
+        if (centralArea == null) return false;
+        else if ((key & Lattice.STATE_FLAG) != 0) return true; // (flagged nodes never leave the central area)
+
+        counter.containmentChecks++;
+        return centralArea.contains(lattice.lng(key), lattice.lat(key));
+    }
+
+    /**
+     * Makes a move under the central area rule, see {@link #setCentralArea(NamedRegion)}.
+     *
+     * @param centralArea   the compiled central area; null if the rule is not set.
+     * @param currentKey    the key of the node moved from.
+     * @param currentInside true if the node moved from is within the central area, false otherwise.
+     * @param bearing       the index of the bearing to move in.
+     * @return the key of the node moved to, flagged once the drone has entered the central area; or
+     * {@link Lattice#NO_KEY} if the move cannot be made.
+     */
+    private static long centralAreaState(CompiledAirspace centralArea, SearchStats.Counter counter, Lattice lattice,
+                                         long currentKey, boolean currentInside, int bearing)
+    {
+        final long nextKey = Lattice.neighbour(currentKey, bearing); // (never flagged)
+        if (centralArea == null || nextKey == Lattice.NO_KEY) return nextKey;
+
+        counter.containmentChecks++;
+        final boolean inside = centralArea.contains(lattice.lng(nextKey), lattice.lat(nextKey));
+        if ((currentKey & Lattice.STATE_FLAG) != 0) return inside ? nextKey | Lattice.STATE_FLAG : Lattice.NO_KEY;
+
+        return inside && !currentInside ? nextKey | Lattice.STATE_FLAG : nextKey;
+    }
+
+    /**
+     * Represents one of the two frontiers of a bidirectional search, growing from its origin towards its target.
+     * <p>
+     * Nodes are generated as in {@link #findRoute(LngLat, LngLat)}; every generated node is additionally registered by
+     * position, such that the opposite frontier can find it.
+     * <p>
+     * (i) A stitched route is as long as the scores of both its halves; a node is therefore only generated if its score
+     * and the lower bound of the remaining score to the target stay within the upper bound.
+     */
+    private final class Frontier
+    {
+        final private CompiledAirspace airspace;
+        final private Domain domain;
+        final private Lattice lattice;
+        final private IndexedMinHeap openSet;
+        final private NodeStore nodes;
+        final private ProximityGrid grid;
+        final private Heuristic heuristic;
+        final private SearchStats.Counter counter; // (shared by both frontiers)
+        final private boolean checkSegments;
+        final private double upperBound;
+        final private double targetLng;
+        final private double targetLat;
+
+        Frontier(CompiledAirspace airspace, Domain domain, Heuristic heuristic, SearchStats.Counter counter,
+                 boolean checkSegments, double upperBound, SearchArena arena, LngLat origin, LngLat target)
+        {
+            this.airspace = airspace;
+            this.domain = domain;
+            this.heuristic = heuristic;
+            this.counter = counter;
+            this.checkSegments = checkSegments;
+            this.upperBound = upperBound;
+            this.lattice = new Lattice(origin);
+            this.openSet = arena.openSet;
+            this.nodes = arena.nodes;
+            this.grid = arena.grid;
+            this.targetLng = target.lng();
+            this.targetLat = target.lat();
+
+            final int startId = nodes.add(Lattice.ORIGIN);
+            nodes.setRouteScore(startId, 0d);
+            nodes.setEstimatedScore(startId, heuristic.estimate(origin.lng(), origin.lat(), targetLng, targetLat));
+            openSet.push(startId, nodes.getEstimatedScore(startId));
+            grid.add(origin.lng(), origin.lat(), startId);
+            counter.generated++;
+        }
+
+        /**
+         * Polls the node with the lowest estimated score, and generates its neighbours.
+         *
+         * @return the id of the polled node.
+         */
+        int expand()
+        {
+            counter.open(openSet.size());
+            final int currentId = openSet.poll();
+            final long currentKey = nodes.getKey(currentId);
+            counter.expanded++;
+
+            for (int bearing = 0; bearing < Lattice.BEARINGS; bearing++)
+            {
+                final long nextKey = Lattice.neighbour(currentKey, bearing);
+                if (nextKey == Lattice.NO_KEY) continue;
+
+                final double lng = lattice.lng(nextKey);
+                final double lat = lattice.lat(nextKey);
+                int nextId = nodes.find(nextKey);
+                if (nextId == NodeStore.NOT_FOUND)
+                {
+                    if (!isWithinBoundary(airspace, domain, counter, lng, lat)) continue;
+                } else if (openSet.isClosed(nextId))
+                {
+                    continue;
+                }
+
+                // (i) Checked before a new node is registered, such that the opposite frontier only meets reached ones.
+                final double newScore = nodes.getRouteScore(currentId) + SystemConstants.DRONE_MOVE_DISTANCE;
+                if (Double.isFinite(upperBound) &&
+                        newScore + admissibleEstimate(heuristic, lng, lat, targetLng, targetLat) > upperBound) continue;
+                if (checkSegments && crossesBoundary(airspace, counter, lattice, currentKey, nextKey)) continue;
+                if (nextId == NodeStore.NOT_FOUND)
+                {
+                    nextId = nodes.add(nextKey);
+                    counter.generated++;
+                    grid.add(lng, lat, nextId);
+                }
+
+                if (newScore < nodes.getRouteScore(nextId))
+                {
+                    final double estimatedScore = newScore + heuristic.estimate(lng, lat, targetLng, targetLat);
+
+                    nodes.setParent(nextId, currentId, bearing);
+                    nodes.setRouteScore(nextId, newScore); // [gScore]
+                    nodes.setEstimatedScore(nextId, estimatedScore); // [fScore]
+                    openSet.push(nextId, estimatedScore);
+                }
+            }
+            return currentId;
+        }
     }
 }
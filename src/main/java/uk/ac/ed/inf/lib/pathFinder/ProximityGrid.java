@@ -0,0 +1,141 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Represents a uniform grid of items (e.g. node ids) by position, such that the items near a given position can be
+ * enumerated without scanning every item.
+ * <p>
+ * Only occupied cells are allocated: cells are held in an open-addressing (linear probing) table keyed by their
+ * coordinates, and each cell chains its items through a shared array.
+ */
+final class ProximityGrid
+{
+    private static final int DEFAULT_CAPACITY = 256;
+
+    final private double cellSize;
+
+    // [table] cell coordinates → first entry + 1 (0 → empty slot).
+    private long[] cellKeys;
+    private int[] heads;
+    private int mask;
+    private int shift;
+    private int cells;
+
+    // [entries] chained per cell, newest first.
+    private int[] items;
+    private int[] next;
+    private int size;
+
+    /**
+     * Constructs an empty grid.
+     *
+     * @param cellSize the length of a cell's side; items within that distance of a position are always enumerated by
+     *                 {@link #forEachNear(double, double, IntConsumer)}.
+     */
+    ProximityGrid(double cellSize)
+    {
+        this.cellSize = cellSize;
+        this.items = new int[DEFAULT_CAPACITY];
+        this.next = new int[DEFAULT_CAPACITY];
+        allocateTable(DEFAULT_CAPACITY * 2);
+    }
+
+    /**
+     * Adds the given item at the given position.
+     */
+    void add(double x, double y, int item)
+    {
+        if (size == items.length)
+        {
+            items = Arrays.copyOf(items, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+        }
+        if ((cells + 1) * 2 > cellKeys.length) allocateTable(cellKeys.length * 2);
+
+        final long cell = cellOf(x, y);
+        final int slot = slotOf(cell);
+        if (heads[slot] == 0)
+        {
+            cellKeys[slot] = cell;
+            cells++;
+        }
+
+        items[size] = item;
+        next[size] = heads[slot] - 1;
+        heads[slot] = ++size;
+    }
+
+    /**
+     * Removes every item, while retaining the allocated capacity.
+     */
+    void clear()
+    {
+        Arrays.fill(heads, 0);
+        cells = 0;
+        size = 0;
+    }
+
+    /**
+     * Enumerates the items held in the cell of the given position and its 8 neighbouring cells; this includes every
+     * item within one cell's side of the position (and possibly some further away).
+     */
+    void forEachNear(double x, double y, IntConsumer consumer)
+    {
+        final long column = (long) Math.floor(x / cellSize);
+        final long row = (long) Math.floor(y / cellSize);
+        for (long c = column - 1; c <= column + 1; c++)
+        {
+            for (long r = row - 1; r <= row + 1; r++)
+            {
+                final int slot = slotOf(pack(c, r));
+                for (int entry = heads[slot] - 1; entry >= 0; entry = next[entry]) consumer.accept(items[entry]);
+            }
+        }
+    }
+
+    private long cellOf(double x, double y)
+    {
+        return pack((long) Math.floor(x / cellSize), (long) Math.floor(y / cellSize));
+    }
+
+    private static long pack(long column, long row)
+    {
+        return (column << 32) ^ (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the slot holding the given cell, or the empty slot it would be held in.
+     */
+    private int slotOf(long cell)
+    {
+        int slot = (int) ((cell * 0x9E3779B97F4A7C15L) >>> shift);
+        while (heads[slot] != 0 && cellKeys[slot] != cell) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * (Re-)allocates the table with the given (power of two) capacity, and re-inserts every cell.
+     */
+    private void allocateTable(int capacity)
+    {
+        final long[] oldKeys = cellKeys;
+        final int[] oldHeads = heads;
+
+        cellKeys = new long[capacity];
+        heads = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        if (oldKeys == null) return;
+
+        for (int slot = 0; slot < oldKeys.length; slot++)
+        {
+            if (oldHeads[slot] == 0) continue;
+
+            final int newSlot = slotOf(oldKeys[slot]);
+            cellKeys[newSlot] = oldKeys[slot];
+            heads[newSlot] = oldHeads[slot];
+        }
+    }
+}
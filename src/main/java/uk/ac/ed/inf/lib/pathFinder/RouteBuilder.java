@@ -0,0 +1,191 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents a route under construction, built move by move on the {@link Lattice} of its starting position.
+ * <p>
+ * Every move is checked against the no-fly zones as it is made (its ending position, and optionally the segment it
+ * covers); a move that cannot be made leaves the route unchanged.
+ * Once complete, the route is turned into the directions of a {@link IPathFinder.Result}, see {@link #build(LngLat)}.
+ */
+final class RouteBuilder
+{
+    private static final LngLatHandler lngLatHandler = new LngLatHandler();
+
+    final private Lattice lattice;
+    final private NoFlyZoneIndex noFlyZones;
+    final private boolean checkSegments;
+
+    private long key;
+    private byte[] bearings;
+    private int size;
+
+    /**
+     * Constructs an empty route.
+     *
+     * @param from       the starting position.
+     * @param noFlyZones the no-fly zones to avoid; null if there are none.
+     */
+    RouteBuilder(LngLat from, NoFlyZoneIndex noFlyZones)
+    {
+        this(from, noFlyZones, false);
+    }
+
+    /**
+     * Constructs an empty route.
+     *
+     * @param from          the starting position.
+     * @param noFlyZones    the no-fly zones to avoid; null if there are none.
+     * @param checkSegments true to reject the moves crossing a zone's edge as well, see
+     *                      {@link NoFlyZoneIndex#crossesEdge(double, double, double, double)}; false to only reject the
+     *                      moves ending within a zone.
+     */
+    RouteBuilder(LngLat from, NoFlyZoneIndex noFlyZones, boolean checkSegments)
+    {
+        this.lattice = new Lattice(from);
+        this.noFlyZones = noFlyZones;
+        this.checkSegments = checkSegments;
+        this.key = Lattice.ORIGIN;
+        this.bearings = new byte[64];
+    }
+
+    /**
+     * @return the number of moves made.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the longitude of the current position.
+     */
+    double lng()
+    {
+        return lattice.lng(key);
+    }
+
+    /**
+     * @return the latitude of the current position.
+     */
+    double lat()
+    {
+        return lattice.lat(key);
+    }
+
+    /**
+     * @return true if the current position is close to the given one, false otherwise.
+     */
+    boolean isCloseTo(LngLat position)
+    {
+        return lngLatHandler.isCloseTo(lng(), lat(), position.lng(), position.lat());
+    }
+
+    /**
+     * Makes a single move.
+     *
+     * @param bearing the index of the bearing to move in.
+     * @return true if the move was made, false if it would end within (or cross) a no-fly zone, or outside the lattice.
+     */
+    boolean move(int bearing)
+    {
+        final long next = Lattice.neighbour(key, bearing);
+        if (next == Lattice.NO_KEY) return false;
+        if (noFlyZones != null && noFlyZones.contains(lattice.lng(next), lattice.lat(next))) return false;
+        if (checkSegments && noFlyZones != null &&
+                noFlyZones.crossesEdge(lng(), lat(), lattice.lng(next), lattice.lat(next))) return false;
+
+        if (size == bearings.length) bearings = Arrays.copyOf(bearings, size * 2);
+        bearings[size++] = (byte) bearing;
+        key = next;
+        return true;
+    }
+
+    /**
+     * Follows the straight line from the current position towards the given waypoint, alternating between the two
+     * bearings enclosing the line's direction such that the route never strays from the line by more than one step's
+     * lateral component (akin to Bresenham's line algorithm).
+     * <p>
+     * The line is followed until the waypoint is reached: for the final waypoint, until the current position is close
+     * to it; otherwise, until less than half a move remains.
+     *
+     * @param waypoint the position to head for.
+     * @param last     true if the waypoint is the route's destination, false otherwise.
+     * @return true if the waypoint was reached, false if a move could not be made.
+     */
+    boolean followLine(LngLat waypoint, boolean last)
+    {
+        final double originLng = lng();
+        final double originLat = lat();
+        final double dx = waypoint.lng() - originLng;
+        final double dy = waypoint.lat() - originLat;
+        final double length = Math.hypot(dx, dy);
+        if (last && isCloseTo(waypoint)) return true;
+        if (length == 0) return true;
+
+        final double ux = dx / length;
+        final double uy = dy / length;
+
+        // The bearings enclosing the line's direction.
+        final double angle = (Math.toDegrees(Math.atan2(dy, dx)) + 360) % 360;
+        final int lower = (int) (angle / LngLatHandler.ANGLE_MULTIPLE) % Lattice.BEARINGS;
+        final int upper = (lower + 1) % Lattice.BEARINGS;
+
+        final double overshoot = SystemConstants.DRONE_MOVE_DISTANCE;
+        while (true)
+        {
+            final double along = (lng() - originLng) * ux + (lat() - originLat) * uy;
+            if (last ? isCloseTo(waypoint) : length - along < SystemConstants.DRONE_MOVE_DISTANCE / 2) return true;
+            if (along > length + overshoot) return false; // (passed the waypoint without reaching it)
+
+            // Pick the bearing keeping the route closest to the line.
+            final int bearing = lateralOffset(lower, originLng, originLat, ux, uy) <=
+                    lateralOffset(upper, originLng, originLat, ux, uy) ? lower : upper;
+            if (!move(bearing)) return false;
+        }
+    }
+
+    /**
+     * Creates the directions of the route, ending with a hover at the given destination.
+     *
+     * @param to the destination; expected to be close to the current position.
+     * @return the directions.
+     */
+    List<INode.Direction> build(LngLat to)
+    {
+        final List<INode.Direction> route = new ArrayList<>(size + 2);
+        route.add(new INode.Direction(lattice.getOrigin(), 0));
+
+        long current = Lattice.ORIGIN;
+        for (int i = 0; i < size; i++)
+        {
+            current = Lattice.neighbour(current, bearings[i]);
+            route.add(new INode.Direction(lattice.toLngLat(current), Lattice.angleOf(bearings[i]), i + 1));
+        }
+
+        // [requirement] the drone must hover for one move at its destination.
+        route.add(new INode.Direction(to, size + 1));
+        return route;
+    }
+
+    /**
+     * @return the distance between the line and the position one move away in the given bearing.
+     */
+    private double lateralOffset(int bearing, double originLng, double originLat, double ux, double uy)
+    {
+        final long next = Lattice.neighbour(key, bearing);
+        if (next == Lattice.NO_KEY) return Double.POSITIVE_INFINITY;
+
+        final double x = lattice.lng(next) - originLng;
+        final double y = lattice.lat(next) - originLat;
+        return Math.abs(x * uy - y * ux);
+    }
+}
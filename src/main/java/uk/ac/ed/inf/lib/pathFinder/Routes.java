@@ -0,0 +1,140 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Operations on routes produced by a {@link IPathFinder}, i.e. lists of directions starting with a hover at the exact
+ * starting position, followed by one direction per move, and ending with a hover at the exact destination.
+ */
+final class Routes
+{
+    private static final LngLatHandler lngLatHandler = new LngLatHandler();
+
+    private Routes()
+    {
+    }
+
+    /**
+     * Reverses the given route, such that it leads from its destination back to its starting position.
+     * <p>
+     * The moves are replayed in reverse order with opposite bearings, starting from the exact destination; as the
+     * route's last move only ends <i>close to</i> the destination, every position is shifted by (at most) the
+     * drone's closeness distance. The reversed route is therefore re-checked against the no-fly zones, and discarded if
+     * it no longer holds.
+     *
+     * @param route      the route to reverse.
+     * @param noFlyZones the no-fly zones the reversed route must avoid; null if there are none.
+     * @return the reversed route, or null if it is not a valid route.
+     */
+    static List<INode.Direction> reverse(List<INode.Direction> route, NoFlyZoneIndex noFlyZones)
+    {
+        return reverse(route, noFlyZones, false);
+    }
+
+    /**
+     * Reverses the given route, see {@link #reverse(List, NoFlyZoneIndex)}.
+     *
+     * @param route         the route to reverse.
+     * @param noFlyZones    the no-fly zones the reversed route must avoid; null if there are none.
+     * @param checkSegments true to reject the reversed moves crossing a zone's edge as well, see
+     *                      {@link NoFlyZoneIndex#crossesEdge(double, double, double, double)}; false to only reject the
+     *                      moves ending within a zone.
+     * @return the reversed route, or null if it is not a valid route.
+     */
+    static List<INode.Direction> reverse(List<INode.Direction> route, NoFlyZoneIndex noFlyZones,
+                                         boolean checkSegments)
+    {
+        if (route.size() < 2) return null;
+
+        final LngLat from = route.get(0).position();
+        final LngLat to = route.get(route.size() - 1).position();
+
+        final Lattice lattice = new Lattice(to);
+        final List<INode.Direction> reversed = new ArrayList<>(route.size());
+        reversed.add(new INode.Direction(to, 0));
+
+        long key = Lattice.ORIGIN;
+        for (int i = route.size() - 2; i > 0; i--)
+        {
+            final int bearing = Lattice.bearingOf(route.get(i).angle());
+            if (bearing < 0) return null; // (a hover mid-route cannot be replayed)
+
+            final int opposite = (bearing + Lattice.BEARINGS / 2) % Lattice.BEARINGS;
+            final long previous = key;
+            key = Lattice.neighbour(key, opposite);
+            if (key == Lattice.NO_KEY) return null;
+
+            final double lng = lattice.lng(key);
+            final double lat = lattice.lat(key);
+            if (noFlyZones != null && noFlyZones.contains(lng, lat)) return null;
+            if (checkSegments && noFlyZones != null &&
+                    noFlyZones.crossesEdge(lattice.lng(previous), lattice.lat(previous), lng, lat)) return null;
+
+            reversed.add(new INode.Direction(new LngLat(lng, lat), Lattice.angleOf(opposite), reversed.size()));
+        }
+
+        // [requirement] the last move must end close to the (original) starting position.
+        if (!lngLatHandler.isCloseTo(lattice.lng(key), lattice.lat(key), from.lng(), from.lat())) return null;
+
+        reversed.add(new INode.Direction(from, reversed.size()));
+        return reversed;
+    }
+
+    /**
+     * Checks the given route against the central area rule: once the drone enters the central area, it cannot leave
+     * it again.
+     * <p>
+     * (i) A route starting within the central area has not entered it; it may leave it, but not once it re-enters it.
+     * As with the searches, the final hover is not checked, as the last move already ends close to the destination.
+     *
+     * @param route       the route to check.
+     * @param centralArea the compiled central area; null if the rule does not apply.
+     * @return true if the route respects the rule, false otherwise.
+     */
+    static boolean keepsToCentralArea(List<INode.Direction> route, CompiledAirspace centralArea)
+    {
+        if (centralArea == null || route.isEmpty()) return true;
+
+        // (i) Iterated rather than indexed, as compacted routes expand their directions in order; see CompactRoute.
+        final Iterator<INode.Direction> directions = route.iterator();
+        boolean wasInside = centralArea.contains(directions.next().position());
+        boolean entered = false;
+        for (int i = 1; i < route.size() - 1; i++)
+        {
+            final boolean inside = centralArea.contains(directions.next().position());
+            if (entered && !inside) return false;
+
+            entered |= inside && !wasInside;
+            wasInside = inside;
+        }
+        return true;
+    }
+
+    /**
+     * Bounds the suboptimality of a route found without a guarantee of being the shortest: its number of moves
+     * relative to the fewest moves any route between its endpoints can take (see {@link Heuristic#minimumMoves}).
+     * <p>
+     * (i) The fewest moves ignore the no-fly zones, such that the bound is loose around them; it is only 1 if no route
+     * can be shorter.
+     *
+     * @param route the route to bound.
+     * @return the factor by which the route is at most longer than the shortest one.
+     */
+    static double suboptimalityBound(List<INode.Direction> route)
+    {
+        final LngLat from = route.get(0).position();
+        final LngLat to = route.get(route.size() - 1).position();
+        final int moves = route.size() - 2;
+        final int minimumMoves = Heuristic.minimumMoves(from.lng(), from.lat(), to.lng(), to.lat());
+
+        if (moves <= minimumMoves) return 1;
+        return minimumMoves == 0 ? Double.POSITIVE_INFINITY : (double) moves / minimumMoves;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+
+import java.util.BitSet;
+
+/**
+ * Represents the working memory of a search: its open set, its nodes, its scratch flags and its proximity grid, held
+ * per thread and reused from one search to the next.
+ * <p>
+ * The structures are cleared (rather than re-allocated) between searches, such that a thread processing a batch of
+ * routes only allocates once it exceeds the largest search it has performed so far; under steady load, searches
+ * allocate little besides their result.
+ * <p>
+ * (i) A search acquires an arena of its thread, and releases it once done. Each thread holds two arenas, such that
+ * both frontiers of a bidirectional search are served; a search started while both are already in use on the same
+ * thread (e.g. a path finder delegating to another) is given a fresh, unshared arena.
+ */
+final class SearchArena implements AutoCloseable
+{
+    // (i) An arena grown past this many nodes by an unusually large search is dropped rather than retained, such that
+    //     idle threads do not hold on to its memory.
+    private static final int RETAINED_NODES = 1 << 20;
+
+    private static final int SLOTS = 2;
+
+    private static final ThreadLocal<SearchArena[]> ARENAS = ThreadLocal.withInitial(() -> new SearchArena[SLOTS]);
+
+    final IndexedMinHeap openSet = new IndexedMinHeap();
+    final NodeStore nodes = new NodeStore();
+    final BitSet flags = new BitSet();
+    final ProximityGrid grid = new ProximityGrid(SystemConstants.DRONE_IS_CLOSE_DISTANCE);
+
+    private int slot = -1; // (-1 → fresh arena, held by no thread)
+    private boolean inUse;
+
+    private SearchArena()
+    {
+    }
+
+    /**
+     * @return an arena of the current thread, cleared; or a fresh one if the thread's arenas are all in use.
+     */
+    static SearchArena acquire()
+    {
+        final SearchArena[] arenas = ARENAS.get();
+        for (int slot = 0; slot < SLOTS; slot++)
+        {
+            if (arenas[slot] == null)
+            {
+                arenas[slot] = new SearchArena();
+                arenas[slot].slot = slot;
+            }
+
+            final SearchArena arena = arenas[slot];
+            if (arena.inUse) continue;
+
+            arena.inUse = true;
+            return arena;
+        }
+
+        return new SearchArena();
+    }
+
+    /**
+     * Releases the arena: clears it for the next search of the thread, or drops it if it has grown too large.
+     */
+    @Override
+    public void close()
+    {
+        if (slot < 0 || !inUse) return; // (a fresh arena is simply discarded)
+
+        if (nodes.size() > RETAINED_NODES)
+        {
+            ARENAS.get()[slot] = null;
+            return;
+        }
+
+        openSet.clear();
+        nodes.clear();
+        flags.clear();
+        grid.clear();
+        inUse = false;
+    }
+}
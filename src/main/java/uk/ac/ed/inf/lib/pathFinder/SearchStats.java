@@ -0,0 +1,105 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+/**
+ * Represents the work performed by a path finding operation, see {@link IPathFinder.Result#getStats()}.
+ * <p>
+ * (i) Decorators (e.g. {@link CachingPathFinder}) add their own work to the statistics of the searches they delegate
+ * to; a route served without searching reports no work beyond its wall time.
+ *
+ * @param expanded          the number of nodes expanded (polled from the open set).
+ * @param generated         the number of distinct nodes generated.
+ * @param stalePops         the number of nodes expanded again, or polled after being superseded.
+ * @param peakOpenSet       the largest size reached by the open set.
+ * @param containmentChecks the number of positions (and moves, see {@link PathFinder#setSegmentCheck(boolean)}) checked
+ *                          against the no-fly zones.
+ * @param elapsedNanos      the wall time of the operation (in nanoseconds).
+ * @param moves             the number of moves of the route found; 0 if none was.
+ */
+public record SearchStats(long expanded,
+                          long generated,
+                          long stalePops,
+                          int peakOpenSet,
+                          long containmentChecks,
+                          long elapsedNanos,
+                          int moves)
+{
+    /**
+     * The statistics of an operation which performed no work.
+     */
+    public static final SearchStats NONE = new SearchStats(0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * Combines the statistics of two operations, e.g. to summarise a run.
+     *
+     * @param other the statistics to add.
+     * @return the summed statistics; the peak open set is the larger of both.
+     */
+    public SearchStats plus(SearchStats other)
+    {
+        return new SearchStats(
+                expanded + other.expanded,
+                generated + other.generated,
+                stalePops + other.stalePops,
+                Math.max(peakOpenSet, other.peakOpenSet),
+                containmentChecks + other.containmentChecks,
+                elapsedNanos + other.elapsedNanos,
+                moves + other.moves);
+    }
+
+    /**
+     * Represents the counters of a search in progress; confined to the search's thread.
+     */
+    static final class Counter
+    {
+        final private long startTime = System.nanoTime();
+
+        long expanded;
+        long generated;
+        long stalePops;
+        int peakOpenSet;
+        long containmentChecks;
+
+        /**
+         * Records the current size of the open set.
+         */
+        void open(int size)
+        {
+            if (size > peakOpenSet) peakOpenSet = size;
+        }
+
+        /**
+         * Adds the work of a search performed on behalf of this one (e.g. a leg of the route).
+         */
+        void add(SearchStats stats)
+        {
+            expanded += stats.expanded();
+            generated += stats.generated();
+            stalePops += stats.stalePops();
+            containmentChecks += stats.containmentChecks();
+            open(stats.peakOpenSet());
+        }
+
+        /**
+         * Sets the statistics of the given result: the work it already reports (i.e. of the searches it was delegated
+         * to), plus the work counted, over the wall time since the counter was created.
+         *
+         * @param result the result of the search.
+         * @return the given result.
+         */
+        IPathFinder.Result finish(IPathFinder.Result result)
+        {
+            final SearchStats nested = result.getStats();
+            final int moves = result.getOk() ? Math.max(0, result.getRoute().size() - 2) : 0;
+
+            result.setStats(new SearchStats(
+                    nested.expanded() + expanded,
+                    nested.generated() + generated,
+                    nested.stalePops() + stalePops,
+                    Math.max(nested.peakOpenSet(), peakOpenSet),
+                    nested.containmentChecks() + containmentChecks,
+                    System.nanoTime() - startTime,
+                    moves));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package uk.ac.ed.inf.lib.pathFinder;
+
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+import uk.ac.ed.inf.lib.airspace.VisibilityGraph;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a {@link IPathFinder} planning over the visibility graph of the no-fly zones rather than the move lattice.
+ * <p>
+ * The any-angle shortest path is found along the graph (see {@link VisibilityGraph}), and each of its straight legs is
+ * then turned into moves along the {@value Lattice#BEARINGS} bearings, see
+ * {@link RouteBuilder#followLine(LngLat, boolean)}. A search therefore only visits a few dozen graph edges, regardless
+ * of the route's length.
+ * <p>
+ * (i) The resulting route is not guaranteed to be the shortest sequence of moves, as legs bend at the inflated corners
+ * rather than the closest lattice positions; it is typically within a few moves of it, and reported with its bound
+ * accordingly (see {@link Result#getSuboptimalityBound()}). Should the legs not translate into valid moves (e.g. an
+ * endpoint lying too close to a zone), the search is delegated to the fallback path finder.
+ */
+public class VisibilityGraphPathFinder implements IPathFinder
+{
+    /**
+     * The distance by which the zones' corners are pushed outwards.
+     */
+    public static final double INFLATION = 2 * SystemConstants.DRONE_MOVE_DISTANCE;
+
+    /**
+     * The minimum distance between a leg and any zone edge; covers the lateral deviation of the moves from the leg.
+     */
+    public static final double CLEARANCE = SystemConstants.DRONE_MOVE_DISTANCE;
+
+    final private IPathFinder fallback;
+
+    private volatile Airspace airspace;
+    private volatile CompiledAirspace centralArea; // (null unless the central area rule is set)
+    private volatile boolean checkSegments;
+
+    /**
+     * Constructs a path finder falling back to {@link PathFinder}.
+     */
+    public VisibilityGraphPathFinder()
+    {
+        this(new PathFinder());
+    }
+
+    /**
+     * Constructs a path finder.
+     *
+     * @param fallback the path finder to which searches are delegated if no valid route is found along the graph.
+     * @throws IllegalArgumentException if the fallback is null.
+     */
+    public VisibilityGraphPathFinder(IPathFinder fallback) throws IllegalArgumentException
+    {
+        if (fallback == null)
+            throw new IllegalArgumentException("fallback cannot be null");
+
+        this.fallback = fallback;
+        this.airspace = new Airspace(null, null);
+    }
+
+    /**
+     * Sets the no-fly zones to avoid, and builds their visibility graph.
+     *
+     * @param noFlyZones the no-fly zones; null if there are none.
+     * @throws IllegalArgumentException if any zone is not a closed polygon (min. 3 vertices).
+     */
+    public void setNoFlyZones(NamedRegion[] noFlyZones) throws IllegalArgumentException
+    {
+        fallback.setNoFlyZones(noFlyZones);
+        if (noFlyZones == null)
+        {
+            this.airspace = new Airspace(null, null);
+            return;
+        }
+
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(noFlyZones);
+        this.airspace = new Airspace(index, new VisibilityGraph(index, INFLATION, CLEARANCE));
+    }
+
+    /**
+     * Sets the central area on both this path finder and its fallback, see
+     * {@link IPathFinder#setCentralArea(NamedRegion)}.
+     * <p>
+     * (i) Routes are found without regard to the rule, and checked against it once found; those breaking it are
+     * searched for by the fallback instead.
+     *
+     * @param centralArea the central area; null to lift the rule.
+     * @throws IllegalArgumentException if the central area is not a closed polygon (min. 3 vertices).
+     */
+    @Override
+    public void setCentralArea(NamedRegion centralArea) throws IllegalArgumentException
+    {
+        fallback.setCentralArea(centralArea);
+        this.centralArea = centralArea == null ? null : CompiledAirspace.compile(new NamedRegion[]{centralArea}, true);
+    }
+
+    /**
+     * Enables|disables the segment check of every move on both this path finder and its fallback (disabled by
+     * default), see {@link PathFinder#setSegmentCheck(boolean)}.
+     * <p>
+     * (i) Legs keep their clearance from the zones' edges; the check only rejects the moves of a leg starting or
+     * ending next to a zone, whose route is then searched for by the fallback instead.
+     *
+     * @param enabled true to check the segment of every move, false to only check its ending position.
+     */
+    @Override
+    public void setSegmentCheck(boolean enabled)
+    {
+        fallback.setSegmentCheck(enabled);
+        this.checkSegments = enabled;
+    }
+
+    @Override
+    public boolean getSegmentCheck()
+    {
+        return checkSegments;
+    }
+
+    /**
+     * @return a fingerprint of the path finder's class, segment check and fallback; see
+     * {@link IPathFinder#getConfigurationFingerprint()}.
+     */
+    @Override
+    public long getConfigurationFingerprint()
+    {
+        final long fingerprint = 31 * IPathFinder.super.getConfigurationFingerprint() + Boolean.hashCode(checkSegments);
+        return 31 * fingerprint + fallback.getConfigurationFingerprint();
+    }
+
+    public Result findRoute(LngLat fromPos, LngLat toPos)
+    {
+        if (fromPos == null || toPos == null)
+            throw new IllegalArgumentException("positions cannot be null");
+        else if (fromPos.equals(toPos))
+            throw new IllegalArgumentException("positions cannot be equal");
+
+        final SearchStats.Counter counter = new SearchStats.Counter();
+        final Airspace airspace = this.airspace;
+        try
+        {
+            final List<LngLat> waypoints = airspace.graph() == null ?
+                    List.of(fromPos, toPos) :
+                    airspace.graph().shortestPath(fromPos, toPos);
+
+            if (waypoints != null)
+            {
+                final RouteBuilder route = new RouteBuilder(fromPos, airspace.index(), checkSegments);
+                boolean valid = true;
+                for (int i = 1; i < waypoints.size() && valid; i++)
+                    valid = route.followLine(waypoints.get(i), i == waypoints.size() - 1);
+
+                final List<INode.Direction> directions = valid && route.isCloseTo(toPos) ? route.build(toPos) : null;
+                if (directions != null && Routes.keepsToCentralArea(directions, centralArea)) // (see setCentralArea)
+                {
+                    final Result result = new Result();
+                    result.setOK(true);
+                    result.setRoute(directions);
+                    result.setSuboptimalityBound(Routes.suboptimalityBound(directions));
+                    return counter.finish(result);
+                }
+            }
+        } catch (Exception e)
+        {
+            final Map<String, LngLat> fields = Map.of("from", fromPos, "to", toPos);
+            final String msg = e.getMessage() == null ? "no message given" : e.getMessage();
+            throw new RuntimeException("unexpected error while calculating the shortest path: " + msg + fields, e);
+        }
+
+        return counter.finish(fallback.findRoute(fromPos, toPos));
+    }
+
+    /**
+     * Represents the no-fly zones along with their visibility graph; replaced as a whole whenever the zones are set.
+     *
+     * @param index the zones' index; null if there are none.
+     * @param graph the zones' visibility graph; null if there are none.
+     */
+    private record Airspace(NoFlyZoneIndex index, VisibilityGraph graph)
+    {
+    }
+}
@@ -0,0 +1,39 @@
+package uk.ac.ed.inf.lib.routeStore;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.lib.pathFinder.INode.Direction;
+
+import java.util.List;
+
+/**
+ * Represents a persistent store of the routes found between two positions, such that they can be reused across runs.
+ * <p>
+ * Routes are stored under their endpoints and a fingerprint of the no-fly zones they were found with (along with
+ * anything else the caller tells routes apart by, e.g. the path finder's configuration); a route is therefore only ever
+ * served for the same airspace.
+ */
+public interface IRouteStore
+{
+    /**
+     * Loads the route between the given positions.
+     *
+     * @param from        the starting position.
+     * @param to          the ending position.
+     * @param fingerprint the fingerprint of the no-fly zones (and configuration).
+     * @return the route's directions, or null if no route is stored under the given key.
+     * @throws RuntimeException if an unexpected error occurs during read.
+     */
+    List<Direction> load(LngLat from, LngLat to, long fingerprint) throws RuntimeException;
+
+    /**
+     * Stores the route between the given positions, replacing any previous one.
+     *
+     * @param from        the starting position.
+     * @param to          the ending position.
+     * @param fingerprint the fingerprint of the no-fly zones (and configuration).
+     * @param route       the route's directions.
+     * @throws IllegalArgumentException if the route cannot be stored (e.g. it does not lead from → to).
+     * @throws RuntimeException         if an unexpected error occurs during write.
+     */
+    void save(LngLat from, LngLat to, long fingerprint, List<Direction> route) throws RuntimeException;
+}
@@ -0,0 +1,214 @@
+package uk.ac.ed.inf.lib.routeStore;
+
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.lib.pathFinder.CompactRoute;
+import uk.ac.ed.inf.lib.pathFinder.INode.Direction;
+import uk.ac.ed.inf.lib.pathFinder.Lattice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+
+/**
+ * Represents a {@link IRouteStore} holding one binary file per route in a given directory.
+ * <p>
+ * Only the bearing of each move is stored (one byte per move); routes are loaded as a {@link CompactRoute}, whose
+ * positions are recomputed from the starting position using the same {@link Lattice} as the path finder, such that a
+ * loaded route is identical to the one stored.
+ * <p>
+ * The store is safe to share between processes: files are read through a read-only memory map, and written to a
+ * temporary file which then atomically replaces the route's file. A reader therefore only ever sees a complete file,
+ * and a file that cannot be decoded (e.g. of an older format) is treated as missing.
+ */
+public class RouteStore implements IRouteStore
+{
+    /**
+     * The directory used by default, relative to the working directory.
+     */
+    public static final String DEFAULT_LOCATION = "resultfiles/routes";
+
+    private static final int MAGIC = 0x50445254; // "PDRT"
+    private static final short VERSION = 1;
+    // magic + version + fingerprint + 4 coordinates + move count.
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES + 4 * Double.BYTES + Integer.BYTES;
+
+    final private Path directory;
+
+    /**
+     * Constructs a store under {@value DEFAULT_LOCATION}.
+     *
+     * @throws RuntimeException if the directory cannot be created.
+     */
+    public RouteStore() throws RuntimeException
+    {
+        this(Path.of(DEFAULT_LOCATION));
+    }
+
+    /**
+     * Constructs a store.
+     *
+     * @param directory the directory holding the routes; created if it doesn't exist.
+     * @throws IllegalArgumentException if the directory is null.
+     * @throws RuntimeException         if the directory cannot be created.
+     */
+    public RouteStore(Path directory) throws RuntimeException
+    {
+        if (directory == null)
+            throw new IllegalArgumentException("directory cannot be null");
+
+        this.directory = directory;
+        try
+        {
+            Files.createDirectories(directory);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(String.format("failed to create directory '%s'", directory), e);
+        }
+    }
+
+    public List<Direction> load(LngLat from, LngLat to, long fingerprint) throws RuntimeException
+    {
+        if (from == null || to == null)
+            throw new IllegalArgumentException("positions cannot be null");
+
+        final Path file = fileOf(from, to, fingerprint);
+        if (!Files.exists(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            final long size = channel.size();
+            if (size < HEADER_SIZE || size - HEADER_SIZE > Integer.MAX_VALUE) return null;
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return decode(buffer, from, to, fingerprint);
+        } catch (NoSuchFileException e)
+        {
+            return null; // (replaced|removed in the meantime)
+        } catch (IOException e)
+        {
+            throw new RuntimeException(String.format("failed to read route from '%s': %s", file, e.getMessage()), e);
+        }
+    }
+
+    public void save(LngLat from, LngLat to, long fingerprint, List<Direction> route) throws RuntimeException
+    {
+        final byte[] data = encode(from, to, fingerprint, route);
+        final Path file = fileOf(from, to, fingerprint);
+
+        Path temporary = null;
+        try
+        {
+            // (i) The route is written in full before being moved into place, such that concurrent readers never see
+            //     a partially written file.
+            temporary = Files.createTempFile(directory, "route-", ".tmp");
+            Files.write(temporary, data);
+            try
+            {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e)
+        {
+            throw new RuntimeException(String.format("failed to write route to '%s': %s", file, e.getMessage()), e);
+        } finally
+        {
+            try
+            {
+                if (temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored)
+            {
+                // (a leftover temporary file is harmless)
+            }
+        }
+    }
+
+    /**
+     * Encodes the given route.
+     *
+     * @throws IllegalArgumentException if the route does not lead from → to along the lattice of the starting position.
+     */
+    private static byte[] encode(LngLat from, LngLat to, long fingerprint, List<Direction> route)
+    {
+        if (from == null || to == null || route == null)
+            throw new IllegalArgumentException("positions and route cannot be null");
+        else if (route.size() < 2)
+            throw new IllegalArgumentException("route must contain at least its starting and ending positions");
+        else if (!route.get(0).position().equals(from) || !route.get(route.size() - 1).position().equals(to))
+            throw new IllegalArgumentException("route must lead from the starting to the ending position");
+
+        final CompactRoute compactRoute = CompactRoute.of(route);
+        if (compactRoute == null)
+            throw new IllegalArgumentException("route must lie on the lattice of its starting position");
+
+        final int moves = compactRoute.moves();
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + moves);
+        writeHeader(buffer, from, to, fingerprint, moves);
+        for (int move = 0; move < moves; move++) buffer.put((byte) compactRoute.bearingAt(move));
+
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the route held by the given buffer.
+     *
+     * @return the route, or null if the buffer does not hold a route for the given key.
+     */
+    private static List<Direction> decode(ByteBuffer buffer, LngLat from, LngLat to, long fingerprint)
+    {
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION || buffer.getLong() != fingerprint) return null;
+
+        final LngLat storedFrom = new LngLat(buffer.getDouble(), buffer.getDouble());
+        final LngLat storedTo = new LngLat(buffer.getDouble(), buffer.getDouble());
+        if (!storedFrom.equals(from) || !storedTo.equals(to)) return null; // (file name collision)
+
+        final int moves = buffer.getInt();
+        if (moves < 0 || moves != buffer.remaining()) return null;
+
+        final byte[] bearings = new byte[moves];
+        buffer.get(bearings);
+        try
+        {
+            // [requirement] the drone must hover for one move at either end; implied by the compact route.
+            return CompactRoute.of(from, to, bearings);
+        } catch (IllegalArgumentException e)
+        {
+            return null; // (a bearing out of range, or moves leaving the lattice)
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, LngLat from, LngLat to, long fingerprint, int moves)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(fingerprint);
+        buffer.putDouble(from.lng());
+        buffer.putDouble(from.lat());
+        buffer.putDouble(to.lng());
+        buffer.putDouble(to.lat());
+        buffer.putInt(moves);
+    }
+
+    /**
+     * @return the file holding the route under the given key.
+     */
+    private Path fileOf(LngLat from, LngLat to, long fingerprint)
+    {
+        // 64-bit FNV-1a (applied per value) over the key; collisions are detected on load, as the header holds the full key.
+        long hash = 0xCBF29CE484222325L;
+        for (long value : new long[]{
+                Double.doubleToLongBits(from.lng()),
+                Double.doubleToLongBits(from.lat()),
+                Double.doubleToLongBits(to.lng()),
+                Double.doubleToLongBits(to.lat()),
+                fingerprint})
+        {
+            hash = (hash ^ value) * 0x100000001B3L;
+        }
+        return directory.resolve(String.format("route-%016x.bin", hash));
+    }
+}
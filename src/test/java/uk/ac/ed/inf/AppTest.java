@@ -6,13 +6,19 @@ import uk.ac.ed.inf.ilp.constant.OrderValidationCode;
 import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.*;
 import uk.ac.ed.inf.lib.api.IAPIClient;
+import uk.ac.ed.inf.lib.pathFinder.DistanceFieldPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.HierarchicalPathFinder;
 import uk.ac.ed.inf.lib.pathFinder.INode;
 import uk.ac.ed.inf.lib.pathFinder.IPathFinder;
-import uk.ac.ed.inf.lib.pathFinder.Node;
+import uk.ac.ed.inf.lib.pathFinder.JumpPointPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.PathFinder;
+import uk.ac.ed.inf.lib.pathFinder.VisibilityGraphPathFinder;
 import uk.ac.ed.inf.lib.systemFileWriter.ISystemFileWriter;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 import static java.time.DayOfWeek.*;
@@ -94,6 +100,27 @@ public class AppTest extends TestCase
         }
     }
 
+    public void testApp_createPathFinder()
+    {
+        assertTrue(App.createPathFinder("astar") instanceof PathFinder);
+        assertTrue(App.createPathFinder("jps") instanceof JumpPointPathFinder);
+        assertTrue(App.createPathFinder("visibility") instanceof VisibilityGraphPathFinder);
+        assertTrue(App.createPathFinder("field") instanceof DistanceFieldPathFinder);
+        assertTrue(App.createPathFinder("hpa") instanceof HierarchicalPathFinder);
+
+        for (String name : new String[]{null, "", "dijkstra"})
+        {
+            try
+            {
+                App.createPathFinder(name);
+                fail("expected 'IllegalArgumentException' to be thrown");
+            } catch (IllegalArgumentException e)
+            {
+                assert e.getMessage().contains("pathFinder");
+            }
+        }
+    }
+
     public void testApp_execute_NoDataAccessException()
     {
         this.testApp_execute_Exception(App.NoDataAccessException.class,
@@ -145,6 +172,58 @@ public class AppTest extends TestCase
         }
     }
 
+    public void testApp_execute_Parallel() throws Exception
+    {
+        final int orderCount = 64;
+        final IAPIClient apiClient = new MockAPIClient(true, false, false, false)
+        {
+            @Override
+            public Order[] getOrdersByISODate(String date)
+            {
+                final Order[] orders = new Order[orderCount];
+                for (int i = 0; i < orderCount; i++)
+                {
+                    orders[i] = super.getOrdersByISODate(date)[0];
+                    orders[i].setOrderNo(String.format("%08d", i));
+                }
+                return orders;
+            }
+        };
+        final List<String> orderNos = new ArrayList<>();
+        final ISystemFileWriter fileWriter = new MockSystemFileWriter(false)
+        {
+            @Override
+            public void writeFlightPath(IPathFinder.Result[] results)
+            {
+                for (IPathFinder.Result result : results) orderNos.add(result.getOrderNo());
+            }
+        };
+
+        // The flight paths must be written in the orders' sequence (outbound, then inbound), regardless of the order
+        // in which they are calculated.
+        App.execute(Logger.getGlobal(), "2023-12-01", apiClient, fileWriter, new MockPathFinder(false, false), 8);
+        assertEquals(2 * orderCount, orderNos.size());
+        for (int i = 0; i < orderNos.size(); i++) assertEquals(String.format("%08d", i / 2), orderNos.get(i));
+    }
+
+    public void testApp_parseParallelism()
+    {
+        assertEquals(1, App.parseParallelism("1"));
+        assertEquals(32, App.parseParallelism(" 32 "));
+
+        for (String value : new String[]{null, "", "0", "-1", "four"})
+        {
+            try
+            {
+                App.parseParallelism(value);
+                fail("expected 'IllegalArgumentException' to be thrown");
+            } catch (IllegalArgumentException e)
+            {
+                assert e.getMessage().contains("parallelism");
+            }
+        }
+    }
+
     private <E extends Exception> void testApp_execute_Exception(
             Class<E> exception,
             IAPIClient apiClient,
@@ -191,7 +270,12 @@ public class AppTest extends TestCase
         {
             if (returnException)
                 throw new RuntimeException("test exception");
-            return new NamedRegion("test", new LngLat[]{});
+            return new NamedRegion("test", new LngLat[]{
+                    new LngLat(-3.192473, 55.946233),
+                    new LngLat(-3.192473, 55.942617),
+                    new LngLat(-3.184319, 55.942617),
+                    new LngLat(-3.184319, 55.946233),
+            });
         }
 
         @Override
@@ -307,10 +391,10 @@ public class AppTest extends TestCase
             {
                 result.setOK(true);
                 result.setOrderNo("test");
-                // (LngLat position, double angle, long ticksSinceStart
-                result.setRoute(
+                // (LngLat position, double angle, long index)
+                result.setRoute(List.of(
                         new INode.Direction(from, 0, 0),
-                        new Node(new INode.Direction(to, 0, 0)));
+                        new INode.Direction(to, 0, 1)));
                 return result;
             }
         }
@@ -318,5 +402,21 @@ public class AppTest extends TestCase
         public void setNoFlyZones(NamedRegion[] noFlyZones)
         {
         }
+
+        @Override
+        public void setCentralArea(NamedRegion centralArea)
+        {
+        }
+
+        @Override
+        public void setSegmentCheck(boolean enabled)
+        {
+        }
+
+        @Override
+        public boolean getSegmentCheck()
+        {
+            return false;
+        }
     }
 }
@@ -4,6 +4,9 @@ import junit.framework.TestCase;
 import uk.ac.ed.inf.ilp.data.LngLat;
 import uk.ac.ed.inf.ilp.data.NamedRegion;
 import uk.ac.ed.inf.lib.LngLatHandler;
+import uk.ac.ed.inf.lib.airspace.PreparedRegion;
+
+import java.util.Random;
 
 public class LngLatHandlerTest extends TestCase
 {
@@ -188,6 +191,85 @@ public class LngLatHandlerTest extends TestCase
         }
     }
 
+    public void testIsInPreparedRegion()
+    {
+        // → Visualisation: https://www.desmos.com/calculator/sucfr9257y (see `testIsInRegion`)
+        final NamedRegion polygon = new NamedRegion("Polygon", new LngLat[]{
+                new LngLat(0, 20),
+                new LngLat(-10, 20),
+                new LngLat(-10, 5),
+                new LngLat(-20, 10),
+                new LngLat(-30, 0),
+                new LngLat(-5, -5),
+                new LngLat(-20, -25),
+                new LngLat(0, -20),
+                new LngLat(20, -20),
+                new LngLat(0, 0),
+                new LngLat(10, 10),
+        });
+        final PreparedRegion prepared = new PreparedRegion(polygon);
+        assertEquals(11, prepared.size());
+        assertEquals(-30.0, prepared.getMinLng());
+        assertEquals(20.0, prepared.getMaxLat());
+
+        // The prepared form answers exactly as the region itself; including for the vertices, and positions on edges.
+        final Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++)
+        {
+            final LngLat position = i < polygon.vertices().length ?
+                    polygon.vertices()[i] :
+                    new LngLat(random.nextInt(70) - 35 + (i % 2) * random.nextDouble(), random.nextInt(60) - 30);
+            assertEquals(handler.isInRegion(position, polygon), handler.isInPreparedRegion(position, prepared));
+        }
+        assertFalse(handler.isInPreparedRegion(new LngLat(-5, 20), prepared)); // (on the edge A → B)
+        assertTrue(handler.isInPreparedRegion(new LngLat(-5, 19.9), prepared));
+
+        // Positions at the fringe of the floating-point range agree as well.
+        final NamedRegion sliver = new NamedRegion("Sliver", new LngLat[]{
+                new LngLat(-3.1869, 55.9445),
+                new LngLat(-3.1869 + 1e-12, 55.9445 + 3e-12),
+                new LngLat(-3.1869 - 2e-12, 55.9445 + 7e-12),
+        });
+        final PreparedRegion preparedSliver = new PreparedRegion(sliver);
+        for (int i = 0; i < 10_000; i++)
+        {
+            final LngLat position =
+                    new LngLat(-3.1869 + (random.nextDouble() - 0.5) * 6e-12, 55.9445 + random.nextDouble() * 8e-12);
+            assertEquals(handler.isInRegion(position, sliver), handler.isInPreparedRegion(position, preparedSliver));
+        }
+    }
+
+    public void testIsInPreparedRegion_IllegalArgumentException()
+    {
+        try
+        {
+            handler.isInPreparedRegion(null, new PreparedRegion(new NamedRegion("", new LngLat[]{
+                    new LngLat(0, 0), new LngLat(1, 0), new LngLat(0, 1)})));
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+            assertTrue(e.getMessage().contains("position"));
+        }
+
+        final NamedRegion[] cases = new NamedRegion[]{
+                null,
+                new NamedRegion("", new LngLat[]{new LngLat(0, 0), new LngLat(0, 0)}),
+        };
+        for (NamedRegion region : cases)
+        {
+            try
+            {
+                new PreparedRegion(region);
+                fail("expected 'IllegalArgumentException' to be thrown");
+            } catch (IllegalArgumentException e)
+            {
+                // Caught as expected.
+                assertTrue(e.getMessage().contains("region"));
+            }
+        }
+    }
+
     public void testNextPosition()
     {
         final double tolerance = 1E-17; // Necessary as decimal rounding will differ in runtime environment.
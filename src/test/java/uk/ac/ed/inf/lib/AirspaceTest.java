@@ -0,0 +1,253 @@
+package uk.ac.ed.inf.lib;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.airspace.CompiledAirspace;
+import uk.ac.ed.inf.lib.airspace.NoFlyZoneIndex;
+import uk.ac.ed.inf.lib.airspace.OccupancyRaster;
+import uk.ac.ed.inf.lib.airspace.ReachabilityMap;
+import uk.ac.ed.inf.lib.airspace.VisibilityGraph;
+
+import java.util.List;
+import java.util.Random;
+
+public class AirspaceTest extends TestCase
+{
+    private static final LngLatHandler handler = new LngLatHandler();
+
+    // → Visualisation: https://www.desmos.com/calculator/sucfr9257y (see `LngLatHandlerTest`)
+    private static final NamedRegion POLYGON = new NamedRegion("Polygon", new LngLat[]{
+            new LngLat(0, 20),
+            new LngLat(-10, 20),
+            new LngLat(-10, 5),
+            new LngLat(-20, 10),
+            new LngLat(-30, 0),
+            new LngLat(-5, -5),
+            new LngLat(-20, -25),
+            new LngLat(0, -20),
+            new LngLat(20, -20),
+            new LngLat(0, 0),
+            new LngLat(10, 10),
+    });
+
+    private static final NamedRegion SQUARE = new NamedRegion("Square", new LngLat[]{
+            new LngLat(30, 30),
+            new LngLat(40, 30),
+            new LngLat(40, 40),
+            new LngLat(30, 40),
+    });
+
+    public void testNoFlyZoneIndex()
+    {
+        final NamedRegion[] zones = new NamedRegion[]{POLYGON, SQUARE};
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(zones);
+
+        // The index must agree with `isInRegion` everywhere, including on the vertices' coordinates.
+        for (double lng = -35; lng <= 45; lng += 0.5)
+        {
+            for (double lat = -30; lat <= 45; lat += 0.5)
+            {
+                final LngLat position = new LngLat(lng, lat);
+                final boolean expected = handler.isInRegion(position, POLYGON) || handler.isInRegion(position, SQUARE);
+                assertEquals(position.toString(), expected, index.contains(position));
+            }
+        }
+
+        assertEquals(0, index.indexOf(0, 10));
+        assertEquals(1, index.indexOf(35, 35));
+        assertEquals(-1, index.indexOf(25, 25));
+        assertEquals(SQUARE, index.getZone(1));
+    }
+
+    public void testNoFlyZoneIndex_Empty()
+    {
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(new NamedRegion[0]);
+        assertEquals(0, index.size());
+        assertFalse(index.contains(0, 0));
+    }
+
+    public void testNoFlyZoneIndex_IllegalArgumentException()
+    {
+        final NamedRegion[][] cases = new NamedRegion[][]{
+                null,
+                {new NamedRegion("", new LngLat[]{new LngLat(0, 0), new LngLat(1, 1)})},
+        };
+        for (NamedRegion[] zones : cases)
+        {
+            try
+            {
+                new NoFlyZoneIndex(zones);
+                fail("expected 'IllegalArgumentException' to be thrown");
+            } catch (IllegalArgumentException e)
+            {
+                // Caught as expected.
+                assertTrue(e.getMessage().contains("zone"));
+            }
+        }
+    }
+
+    public void testVisibilityGraph()
+    {
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(new NamedRegion[]{SQUARE});
+        final VisibilityGraph graph = new VisibilityGraph(index, 2, 1);
+
+        // Every (convex) corner is pushed outwards, keeping the inflation distance to both adjacent edges.
+        assertEquals(4, graph.size());
+        for (int i = 0; i < graph.size(); i++)
+        {
+            final LngLat node = graph.getNode(i);
+            assertFalse(index.contains(node));
+            assertEquals(2, Math.min(Math.abs(node.lng() - 35), Math.abs(node.lat() - 35)) - 5, 1e-9);
+        }
+
+        assertFalse(graph.isVisible(25, 35, 45, 35));
+        assertTrue(graph.isVisible(25, 25, 45, 25));
+
+        // The shortest path bends around the square, at two of its (inflated) corners.
+        final List<LngLat> path = graph.shortestPath(new LngLat(25, 35), new LngLat(45, 35));
+        assertEquals(4, path.size());
+        assertEquals(new LngLat(25, 35), path.get(0));
+        assertEquals(new LngLat(45, 35), path.get(3));
+        assertEquals(path.get(1).lat(), path.get(2).lat(), 0);
+
+        assertNull(graph.shortestPath(new LngLat(35, 35), new LngLat(45, 35)));
+    }
+
+    public void testOccupancyRaster()
+    {
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(new NamedRegion[]{POLYGON, SQUARE});
+        final OccupancyRaster raster = new OccupancyRaster(index, 0.7);
+
+        // The raster must agree with the index everywhere.
+        for (double lng = -35; lng <= 45; lng += 0.25)
+        {
+            for (double lat = -30; lat <= 45; lat += 0.25)
+                assertEquals(lng + ", " + lat, index.contains(lng, lat), raster.contains(lng, lat));
+        }
+
+        assertEquals(OccupancyRaster.BLOCKED, raster.classify(35, 35));
+        assertEquals(OccupancyRaster.FREE, raster.classify(25, 25));
+        assertEquals(OccupancyRaster.BOUNDARY, raster.classify(30, 35));
+        assertTrue(raster.getBoundaryFraction() > 0 && raster.getBoundaryFraction() < 1);
+    }
+
+    public void testCompiledAirspace()
+    {
+        final NamedRegion[] zones = new NamedRegion[]{POLYGON, SQUARE};
+        final CompiledAirspace airspace = CompiledAirspace.compile(zones, false);
+        final CompiledAirspace rasterised = airspace.withRaster(true);
+
+        assertSame(CompiledAirspace.EMPTY, CompiledAirspace.compile(null, true));
+        assertTrue(CompiledAirspace.EMPTY.isEmpty());
+        assertFalse(CompiledAirspace.EMPTY.contains(35, 35));
+
+        // Toggling the raster must share the index, and keep every answer identical.
+        assertFalse(airspace.hasRaster());
+        assertTrue(rasterised.hasRaster());
+        assertSame(airspace.getIndex(), rasterised.getIndex());
+        assertSame(rasterised, rasterised.withRaster(true));
+        assertEquals(NoFlyZoneIndex.fingerprintOf(zones), rasterised.getFingerprint());
+        for (double lng = -35; lng <= 45; lng += 0.5)
+        {
+            for (double lat = -30; lat <= 45; lat += 0.5)
+                assertEquals(lng + ", " + lat, airspace.getIndex().contains(lng, lat), rasterised.contains(lng, lat));
+        }
+    }
+
+    public void testReachabilityMap()
+    {
+        // Four walls (thicker than a move) enclosing a courtyard; the southern wall is left open in one variant.
+        final NamedRegion[] walls = {
+                rectangle("North", -3.1900, 55.9452, -3.1880, 55.9456),
+                rectangle("West", -3.1900, 55.9438, -3.1896, 55.9456),
+                rectangle("East", -3.1884, 55.9438, -3.1880, 55.9456),
+                rectangle("South", -3.1900, 55.9438, -3.1880, 55.9442),
+        };
+        final ReachabilityMap enclosed = CompiledAirspace.compile(walls, false).getReachability();
+        final ReachabilityMap open = new ReachabilityMap(new NoFlyZoneIndex(new NamedRegion[]{
+                walls[0], walls[1], walls[2], rectangle("South", -3.1900, 55.9438, -3.1892, 55.9442)}));
+
+        final double close = 0.00015;
+        final LngLat inside = new LngLat(-3.1890, 55.9447);
+        final LngLat outside = new LngLat(-3.1870, 55.9447);
+        final LngLat farOutside = new LngLat(-3.1920, 55.9430);
+
+        assertEquals(ReachabilityMap.EXTERIOR, enclosed.labelOf(outside.lng(), outside.lat()));
+        assertEquals(ReachabilityMap.BLOCKED, enclosed.labelOf(-3.1898, 55.9447));
+        assertTrue(enclosed.labelOf(inside.lng(), inside.lat()) > ReachabilityMap.EXTERIOR);
+
+        assertFalse(enclosed.isReachable(outside.lng(), outside.lat(), inside.lng(), inside.lat(), close));
+        assertFalse(enclosed.isReachable(inside.lng(), inside.lat(), outside.lng(), outside.lat(), close));
+        assertTrue(enclosed.isReachable(outside.lng(), outside.lat(), farOutside.lng(), farOutside.lat(), close));
+        assertTrue(enclosed.isReachable(inside.lng(), inside.lat(), -3.1888, 55.9449, close));
+        assertTrue(open.isReachable(outside.lng(), outside.lat(), inside.lng(), inside.lat(), close));
+    }
+
+    public void testNoFlyZoneIndex_CrossesEdge()
+    {
+        final NoFlyZoneIndex index = new NoFlyZoneIndex(new NamedRegion[]{SQUARE, POLYGON});
+
+        assertTrue(index.crossesEdge(25, 35, 35, 35)); // (into the square)
+        assertTrue(index.crossesEdge(25, 35, 45, 35)); // (through the square)
+        assertTrue(index.crossesEdge(29, 41, 31, 39)); // (clipping its corner)
+        assertTrue(index.crossesEdge(25, 30, 45, 30)); // (along its edge)
+        assertFalse(index.crossesEdge(31, 31, 39, 39)); // (within the square)
+        assertFalse(index.crossesEdge(28, 41, 41, 41.5)); // (passing by)
+        assertFalse(index.crossesEdge(-100, -100, -90, -90)); // (outside the grid)
+
+        // The grid is only a shortcut: every segment agrees with a test against every edge.
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++)
+        {
+            final double ax = random.nextDouble() * 80 - 35, ay = random.nextDouble() * 80 - 35;
+            final double bx = ax + random.nextDouble() * 10 - 5, by = ay + random.nextDouble() * 10 - 5;
+            assertEquals(crossesAnyEdge(ax, ay, bx, by, SQUARE, POLYGON), index.crossesEdge(ax, ay, bx, by));
+        }
+    }
+
+    /**
+     * @return true if the segment AB properly crosses any edge of the given zones, false otherwise.
+     */
+    private static boolean crossesAnyEdge(double ax, double ay, double bx, double by, NamedRegion... zones)
+    {
+        for (NamedRegion zone : zones)
+        {
+            final LngLat[] vertices = zone.vertices();
+            for (int i = 0, j = vertices.length - 1; i < vertices.length; j = i++)
+            {
+                final double cx = vertices[j].lng(), cy = vertices[j].lat();
+                final double dx = vertices[i].lng(), dy = vertices[i].lat();
+                final double d1 = (dx - cx) * (ay - cy) - (dy - cy) * (ax - cx);
+                final double d2 = (dx - cx) * (by - cy) - (dy - cy) * (bx - cx);
+                final double d3 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+                final double d4 = (bx - ax) * (dy - ay) - (by - ay) * (dx - ax);
+                if (d1 * d2 < 0 && d3 * d4 < 0) return true;
+            }
+        }
+        return false;
+    }
+
+    private static NamedRegion rectangle(String name, double minLng, double minLat, double maxLng, double maxLat)
+    {
+        return new NamedRegion(name, new LngLat[]{
+                new LngLat(minLng, minLat),
+                new LngLat(maxLng, minLat),
+                new LngLat(maxLng, maxLat),
+                new LngLat(minLng, maxLat),
+        });
+    }
+
+    public void testOccupancyRaster_IllegalArgumentException()
+    {
+        try
+        {
+            new OccupancyRaster(new NoFlyZoneIndex(new NamedRegion[]{SQUARE}), 0);
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+            assertTrue(e.getMessage().contains("resolution"));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package uk.ac.ed.inf.lib;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.pathFinder.CachingPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.Heuristic;
+import uk.ac.ed.inf.lib.pathFinder.INode;
+import uk.ac.ed.inf.lib.pathFinder.IPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.PathFinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingPathFinderTest extends TestCase
+{
+    private static final LngLatHandler handler = new LngLatHandler();
+
+    private static final LngLat START_POS = new LngLat(-3.1869, 55.9445);
+    private static final LngLat END_POS = new LngLat(-3.1912869215011597, 55.945535152517735);
+
+    // A zone cutting across the straight line between the two positions.
+    private static final NamedRegion ZONE = new NamedRegion("Zone", new LngLat[]{
+            new LngLat(-3.1895, 55.9440),
+            new LngLat(-3.1885, 55.9440),
+            new LngLat(-3.1885, 55.9455),
+            new LngLat(-3.1895, 55.9455),
+    });
+
+    public void testCachingPathFinder()
+    {
+        final CountingPathFinder counter = new CountingPathFinder(new PathFinder());
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+        pathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+
+        final IPathFinder.Result first = pathFinder.findRoute(START_POS, END_POS);
+        final IPathFinder.Result second = pathFinder.findRoute(START_POS, END_POS);
+        assertEquals(1, counter.calls.get());
+        assertTrue(first.getOk() && second.getOk());
+        assertNotSame(first, second);
+        assertEquals(first.getRoute(), second.getRoute());
+
+        // Only the search reports its work.
+        assertTrue(first.getStats().expanded() > 0);
+        assertEquals(0, second.getStats().expanded());
+        assertEquals(first.getStats().moves(), second.getStats().moves());
+
+        // The inbound leg is served by reversing the outbound one.
+        final IPathFinder.Result inbound = pathFinder.findRoute(END_POS, START_POS);
+        assertEquals(1, counter.calls.get());
+        assertTrue(inbound.getOk());
+        assertValidRoute(inbound.getRoute(), END_POS, START_POS);
+        assertEquals(first.getRoute().size(), inbound.getRoute().size());
+    }
+
+    public void testCachingPathFinder_NoReverse()
+    {
+        final CountingPathFinder counter = new CountingPathFinder(new PathFinder());
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+        pathFinder.setReverseRoutes(false);
+
+        pathFinder.findRoute(START_POS, END_POS);
+        pathFinder.findRoute(END_POS, START_POS);
+        assertEquals(2, counter.calls.get());
+    }
+
+    public void testCachingPathFinder_NoFlyZones()
+    {
+        final CountingPathFinder counter = new CountingPathFinder(new PathFinder());
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+
+        pathFinder.findRoute(START_POS, END_POS);
+        // (i) The zones are compared by geometry, not by identity.
+        pathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        pathFinder.findRoute(START_POS, END_POS);
+        pathFinder.setNoFlyZones(new NamedRegion[]{new NamedRegion("Copy", ZONE.vertices().clone())});
+        pathFinder.findRoute(START_POS, END_POS);
+        assertEquals(2, counter.calls.get());
+    }
+
+    public void testCachingPathFinder_Configuration()
+    {
+        final PathFinder aStar = new PathFinder();
+        final CountingPathFinder counter = new CountingPathFinder(aStar);
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+        pathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+
+        // Routes found under one configuration of the delegate are not served under another.
+        pathFinder.findRoute(START_POS, END_POS);
+        aStar.setSegmentCheck(true);
+        pathFinder.findRoute(START_POS, END_POS);
+        aStar.setHeuristic(Heuristic.MOVE_COUNT);
+        pathFinder.findRoute(START_POS, END_POS);
+        assertEquals(3, counter.calls.get());
+
+        aStar.setSegmentCheck(false);
+        aStar.setHeuristic(Heuristic.EUCLIDEAN);
+        pathFinder.findRoute(START_POS, END_POS);
+        assertEquals(3, counter.calls.get());
+        assertEquals(aStar.getConfigurationFingerprint(), pathFinder.getConfigurationFingerprint());
+    }
+
+    public void testCachingPathFinder_Eviction()
+    {
+        final CountingPathFinder counter = new CountingPathFinder(new PathFinder());
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter, 1);
+        pathFinder.setReverseRoutes(false);
+
+        pathFinder.findRoute(START_POS, END_POS);
+        pathFinder.findRoute(END_POS, START_POS); // (evicts the first route)
+        pathFinder.findRoute(START_POS, END_POS);
+        assertEquals(3, counter.calls.get());
+        assertEquals(1, pathFinder.size());
+    }
+
+    public void testCachingPathFinder_SingleFlight() throws InterruptedException
+    {
+        final int threads = 8;
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingPathFinder counter = new CountingPathFinder(new PathFinder())
+        {
+            @Override
+            public Result findRoute(LngLat from, LngLat to)
+            {
+                try
+                {
+                    release.await(); // (hold the search until every thread has requested the route)
+                } catch (InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+                return super.findRoute(from, to);
+            }
+        };
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+
+        final List<Thread> workers = new ArrayList<>();
+        final AtomicInteger successes = new AtomicInteger();
+        for (int i = 0; i < threads; i++)
+        {
+            final Thread worker = new Thread(() ->
+            {
+                if (pathFinder.findRoute(START_POS, END_POS).getOk()) successes.incrementAndGet();
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread worker : workers) worker.join();
+
+        assertEquals(1, counter.calls.get());
+        assertEquals(threads, successes.get());
+    }
+
+    public void testCachingPathFinder_IllegalArgumentException()
+    {
+        final CachingPathFinder pathFinder = new CachingPathFinder(new PathFinder());
+        final LngLat[][] cases = new LngLat[][]{
+                {null, END_POS},
+                {START_POS, null},
+                {START_POS, START_POS},
+        };
+        for (LngLat[] c : cases)
+        {
+            try
+            {
+                pathFinder.findRoute(c[0], c[1]);
+                fail("expected 'IllegalArgumentException' to be thrown");
+            } catch (IllegalArgumentException e)
+            {
+                // Caught as expected.
+                assertTrue(e.getMessage().contains("positions"));
+            }
+        }
+
+        try
+        {
+            new CachingPathFinder(new PathFinder(), 0);
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+            assertTrue(e.getMessage().contains("capacity"));
+        }
+    }
+
+    private static void assertValidRoute(List<INode.Direction> route, LngLat from, LngLat to)
+    {
+        assertEquals(from, route.get(0).position());
+        assertEquals(999.0, route.get(0).angle());
+        assertEquals(to, route.get(route.size() - 1).position());
+        assertEquals(999.0, route.get(route.size() - 1).angle());
+        assertTrue(handler.isCloseTo(route.get(route.size() - 2).position(), to));
+
+        for (int i = 1; i < route.size() - 1; i++)
+        {
+            final INode.Direction direction = route.get(i);
+            assertEquals(0.0, direction.angle() % LngLatHandler.ANGLE_MULTIPLE);
+            assertFalse(handler.isInRegion(direction.position(), ZONE));
+
+            final double distance = handler.distanceTo(route.get(i - 1).position(), direction.position());
+            assertEquals(SystemConstants.DRONE_MOVE_DISTANCE, distance, 1e-9);
+        }
+    }
+
+    /**
+     * Represents a path finder counting the number of searches it performs.
+     */
+    private static class CountingPathFinder implements IPathFinder
+    {
+        final private IPathFinder delegate;
+        final private AtomicInteger calls = new AtomicInteger();
+
+        CountingPathFinder(IPathFinder delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        public Result findRoute(LngLat from, LngLat to)
+        {
+            calls.incrementAndGet();
+            return delegate.findRoute(from, to);
+        }
+
+        public void setNoFlyZones(NamedRegion[] noFlyZones)
+        {
+            delegate.setNoFlyZones(noFlyZones);
+        }
+
+        public void setCentralArea(NamedRegion centralArea)
+        {
+            delegate.setCentralArea(centralArea);
+        }
+
+        public void setSegmentCheck(boolean enabled)
+        {
+            delegate.setSegmentCheck(enabled);
+        }
+
+        public boolean getSegmentCheck()
+        {
+            return delegate.getSegmentCheck();
+        }
+
+        public long getConfigurationFingerprint()
+        {
+            return delegate.getConfigurationFingerprint();
+        }
+    }
+}
@@ -1,9 +1,31 @@
 package uk.ac.ed.inf.lib;
 
 import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.constant.SystemConstants;
 import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.pathFinder.CachingPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.CompactRoute;
+import uk.ac.ed.inf.lib.pathFinder.DistanceFieldPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.FailureReason;
+import uk.ac.ed.inf.lib.pathFinder.Heuristic;
+import uk.ac.ed.inf.lib.pathFinder.HierarchicalPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.INode;
 import uk.ac.ed.inf.lib.pathFinder.IPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.IndexedMinHeap;
+import uk.ac.ed.inf.lib.pathFinder.JumpPointPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.Lattice;
+import uk.ac.ed.inf.lib.pathFinder.NodeStore;
 import uk.ac.ed.inf.lib.pathFinder.PathFinder;
+import uk.ac.ed.inf.lib.pathFinder.SearchStats;
+import uk.ac.ed.inf.lib.pathFinder.VisibilityGraphPathFinder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class PathFinderTest extends TestCase
 {
@@ -86,4 +108,694 @@ public class PathFinderTest extends TestCase
             assertTrue(e.getMessage().contains("equal"));
         }
     }
+
+    private static final NamedRegion ZONE = new NamedRegion("Zone", new LngLat[]{
+            new LngLat(-3.1895, 55.9440),
+            new LngLat(-3.1885, 55.9440),
+            new LngLat(-3.1885, 55.9455),
+            new LngLat(-3.1895, 55.9455),
+    });
+
+    public void testVisibilityGraphPathFinder()
+    {
+        final IPathFinder visibilityPathFinder = new VisibilityGraphPathFinder(new FailingPathFinder());
+        assertTrue(assertNearShortestRoute(visibilityPathFinder).getSuboptimalityBound() > 1); // (not proven shortest)
+    }
+
+    public void testJumpPointPathFinder()
+    {
+        final JumpPointPathFinder jumpPointPathFinder = new JumpPointPathFinder(new FailingPathFinder());
+        assertTrue(assertNearShortestRoute(jumpPointPathFinder).getSuboptimalityBound() > 1); // (not proven shortest)
+
+        jumpPointPathFinder.setOccupancyRaster(true);
+        assertNearShortestRoute(jumpPointPathFinder);
+
+        // Destinations within the zone are rejected up front, rather than searched for across the whole lattice.
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final IPathFinder.Result rejected = jumpPointPathFinder.findRoute(startPos, new LngLat(-3.1890, 55.9447));
+        assertFalse(rejected.getOk());
+        assertEquals(FailureReason.DESTINATION_IN_NO_FLY_ZONE, rejected.getFailureReason());
+        assertEquals(0, rejected.getStats().expanded());
+
+        // A search exceeding its budget of expansions is delegated to the fallback.
+        final IPathFinder.Result fallbackResult = new IPathFinder.Result();
+        final JumpPointPathFinder limitedPathFinder = new JumpPointPathFinder(new PathFinder()
+        {
+            public Result findRoute(LngLat from, LngLat to)
+            {
+                return fallbackResult;
+            }
+        });
+        limitedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        limitedPathFinder.setMaxExpansions(1);
+        assertSame(fallbackResult,
+                limitedPathFinder.findRoute(startPos, new LngLat(-3.1912869215011597, 55.945535152517735)));
+
+        try
+        {
+            limitedPathFinder.setMaxExpansions(0);
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+        }
+    }
+
+    public void testDistanceFieldPathFinder()
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final DistanceFieldPathFinder fieldPathFinder =
+                new DistanceFieldPathFinder(startPos, 64, new FailingPathFinder());
+        assertTrue(assertNearShortestRoute(fieldPathFinder).getSuboptimalityBound() > 1); // (not proven shortest)
+        assertEquals(0, fieldPathFinder.getMoves(startPos));
+        assertTrue(fieldPathFinder.getMoves(endPos) > 0);
+        assertEquals(-1, fieldPathFinder.getMoves(new LngLat(-3.0, 55.9445))); // (outside the field)
+
+        // Routes towards the source are served from the field as well.
+        final var route = fieldPathFinder.findRoute(endPos, startPos).getRoute();
+        assertEquals(endPos, route.get(0).position());
+        assertEquals(startPos, route.get(route.size() - 1).position());
+        assertTrue(new LngLatHandler().isCloseTo(route.get(route.size() - 2).position(), startPos));
+        for (int i = 1; i < route.size() - 1; i++)
+            assertFalse(new LngLatHandler().isInRegion(route.get(i).position(), ZONE));
+    }
+
+    public void testHierarchicalPathFinder()
+    {
+        final HierarchicalPathFinder hierarchicalPathFinder = new HierarchicalPathFinder(new FailingPathFinder());
+        assertTrue(assertNearShortestRoute(hierarchicalPathFinder).getSuboptimalityBound() > 1);
+        assertTrue(hierarchicalPathFinder.size() > 0);
+
+        // Positions beyond the clusters are left to the fallback.
+        final LngLat outside = new LngLat(-3.178, 55.9445);
+        final IPathFinder.Result fallbackResult = new IPathFinder.Result();
+        final HierarchicalPathFinder boundedPathFinder = new HierarchicalPathFinder(new PathFinder()
+        {
+            public Result findRoute(LngLat from, LngLat to)
+            {
+                return fallbackResult;
+            }
+        });
+        boundedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        assertSame(fallbackResult, boundedPathFinder.findRoute(new LngLat(-3.1869, 55.9445), outside));
+
+        // ... unless they lie within the operating area.
+        boundedPathFinder.setOperatingArea(new NamedRegion("area", new LngLat[]{outside}));
+        final var route = boundedPathFinder.findRoute(new LngLat(-3.1869, 55.9445), outside).getRoute();
+        assertTrue(new LngLatHandler().isCloseTo(route.get(route.size() - 2).position(), outside));
+
+        // The moves of every leg follow on bit-exactly from the route's start, such that it can be held compactly.
+        assertTrue(route.size() - 2 > HierarchicalPathFinder.CLUSTER_MOVES * 2); // (spans several legs)
+        assertNotNull(CompactRoute.of(route));
+    }
+
+    public void testFindPath_Bidirectional()
+    {
+        final PathFinder bidirectionalPathFinder = new PathFinder();
+        bidirectionalPathFinder.setBidirectional(true);
+        assertNearShortestRoute(bidirectionalPathFinder);
+
+        // Without zones, the frontiers meet halfway along the straight line.
+        bidirectionalPathFinder.setNoFlyZones(null);
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.179798972064253, 55.939884084483);
+        final IPathFinder.Result result = bidirectionalPathFinder.findRoute(startPos, endPos);
+        final var route = result.getRoute();
+        final int shortest = pathFinder.findRoute(startPos, endPos).getRoute().size();
+        assertEquals(shortest, route.size(), 1);
+        assertTrue(new LngLatHandler().isCloseTo(route.get(route.size() - 2).position(), endPos));
+        assertTrue(route.size() - 2 <= result.getSuboptimalityBound() * (shortest - 2) + 1e-9);
+
+        // A repeated search reuses the structures of both frontiers, and finds the same route.
+        assertEquals(route, bidirectionalPathFinder.findRoute(startPos, endPos).getRoute());
+    }
+
+    public void testFindPath_MoveCountHeuristic()
+    {
+        final PathFinder moveCountPathFinder = new PathFinder();
+        assertEquals(Heuristic.EUCLIDEAN, moveCountPathFinder.getHeuristic());
+        moveCountPathFinder.setHeuristic(Heuristic.MOVE_COUNT);
+        assertNearShortestRoute(moveCountPathFinder);
+
+        // The estimate never exceeds the moves left, such that the route is as short as the optimal (anytime) search's.
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final PathFinder reference = new PathFinder();
+        reference.setNoFlyZones(new NamedRegion[]{ZONE});
+        assertEquals(reference.findRoute(startPos, endPos, null).getRoute().size(),
+                moveCountPathFinder.findRoute(startPos, endPos).getRoute().size());
+
+        moveCountPathFinder.setBidirectional(true);
+        assertNearShortestRoute(moveCountPathFinder);
+
+        try
+        {
+            moveCountPathFinder.setHeuristic(null);
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+        }
+    }
+
+    public void testFindPath_Reproducible()
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final var route = pathFinder.findRoute(startPos, endPos).getRoute();
+
+        // Every direction is indexed by its position in the route, such that repeated searches are identical.
+        assertEquals(route, new PathFinder().findRoute(startPos, endPos).getRoute());
+        for (int i = 0; i < route.size(); i++)
+            assertEquals(i, route.get(i).index());
+    }
+
+    public void testFindPath_CentralArea()
+    {
+        // (i) The zone is used as the central area; the straight line between both positions cuts across it.
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final LngLat insidePos = new LngLat(-3.1890, 55.9447);
+
+        final PathFinder aStar = new PathFinder();
+        aStar.setBidirectional(true); // (ignored while the rule is set)
+        aStar.setHeuristic(Heuristic.MOVE_COUNT);
+        assertFalse(keepsToCentralArea(aStar.findRoute(startPos, endPos).getRoute()));
+
+        aStar.setCentralArea(ZONE);
+        final IPathFinder[] pathFinders = {aStar, new JumpPointPathFinder(aStar), new HierarchicalPathFinder(aStar)};
+        for (IPathFinder candidate : pathFinders)
+        {
+            candidate.setCentralArea(ZONE);
+
+            // A route entering the central area would have to leave it again; it must go around instead.
+            final var around = candidate.findRoute(startPos, endPos).getRoute();
+            assertTrue(keepsToCentralArea(around));
+            assertTrue(new LngLatHandler().isCloseTo(around.get(around.size() - 2).position(), endPos));
+
+            // Once entered, the central area is never left.
+            final var into = candidate.findRoute(startPos, insidePos).getRoute();
+            assertTrue(keepsToCentralArea(into));
+            assertTrue(new LngLatHandler().isInRegion(into.get(into.size() - 2).position(), ZONE));
+        }
+        assertTrue(keepsToCentralArea(aStar.findRoute(startPos, endPos, Duration.ofSeconds(10)).getRoute()));
+
+        // Lifting the rule restores the direct route.
+        aStar.setCentralArea(null);
+        assertFalse(keepsToCentralArea(aStar.findRoute(startPos, endPos).getRoute()));
+    }
+
+    /**
+     * @return true if the route never leaves the zone once it has entered it, false otherwise.
+     */
+    private static boolean keepsToCentralArea(List<INode.Direction> route)
+    {
+        boolean entered = false;
+        for (int i = 1; i < route.size() - 1; i++)
+        {
+            final boolean inside = new LngLatHandler().isInRegion(route.get(i).position(), ZONE);
+            if (entered && !inside) return false;
+            entered |= inside;
+        }
+        return true;
+    }
+
+    public void testFindPath_Stats()
+    {
+        final PathFinder zonedPathFinder = new PathFinder();
+        zonedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final IPathFinder.Result result = zonedPathFinder.findRoute(startPos, endPos);
+        final SearchStats stats = result.getStats();
+
+        assertTrue(result.getOk());
+        assertEquals(result.getRoute().size() - 2, stats.moves());
+        assertTrue(stats.expanded() > 0 && stats.generated() >= stats.expanded());
+        assertTrue(stats.peakOpenSet() > 0 && stats.containmentChecks() > 0 && stats.elapsedNanos() > 0);
+        assertEquals(0, stats.stalePops()); // (nodes are queued at most once)
+
+        // Statistics are summed across searches; the peak open set is the larger of both.
+        final SearchStats sum = stats.plus(stats);
+        assertEquals(2 * stats.expanded(), sum.expanded());
+        assertEquals(2 * stats.moves(), sum.moves());
+        assertEquals(stats.peakOpenSet(), sum.peakOpenSet());
+        assertEquals(stats, stats.plus(SearchStats.NONE));
+    }
+
+    public void testFindPath_Unreachable()
+    {
+        // Four walls (thicker than a move) enclosing a courtyard.
+        final PathFinder walledPathFinder = new PathFinder();
+        walledPathFinder.setNoFlyZones(new NamedRegion[]{
+                rectangle("North", -3.1900, 55.9452, -3.1880, 55.9456),
+                rectangle("West", -3.1900, 55.9438, -3.1896, 55.9456),
+                rectangle("East", -3.1884, 55.9438, -3.1880, 55.9456),
+                rectangle("South", -3.1900, 55.9438, -3.1880, 55.9442),
+        });
+
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat courtyardPos = new LngLat(-3.1890, 55.9447);
+        final LngLat wallPos = new LngLat(-3.1898, 55.9447);
+
+        // The destination is rejected up front, without expanding a single node.
+        final IPathFinder.Result walledIn = walledPathFinder.findRoute(startPos, courtyardPos);
+        assertFalse(walledIn.getOk());
+        assertEquals(FailureReason.UNREACHABLE, walledIn.getFailureReason());
+        assertEquals(0, walledIn.getStats().expanded());
+        assertEquals(FailureReason.UNREACHABLE, walledPathFinder.findRoute(courtyardPos, startPos).getFailureReason());
+
+        assertEquals(FailureReason.DESTINATION_IN_NO_FLY_ZONE,
+                walledPathFinder.findRoute(startPos, wallPos).getFailureReason());
+        assertEquals(FailureReason.ORIGIN_IN_NO_FLY_ZONE,
+                walledPathFinder.findRoute(wallPos, startPos).getFailureReason());
+
+        // Within the courtyard, routes are found as usual.
+        final IPathFinder.Result inside = walledPathFinder.findRoute(courtyardPos, new LngLat(-3.1888, 55.9449));
+        assertTrue(inside.getOk());
+        assertNull(inside.getFailureReason());
+
+        // A search exceeding its budget of expansions gives up (the straight line being blocked by the zone).
+        final PathFinder limitedPathFinder = new PathFinder();
+        limitedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        limitedPathFinder.setMaxExpansions(10);
+        final IPathFinder.Result limited =
+                limitedPathFinder.findRoute(startPos, new LngLat(-3.1912869215011597, 55.945535152517735));
+        assertFalse(limited.getOk());
+        assertEquals(FailureReason.EXPANSION_LIMIT, limited.getFailureReason());
+        assertTrue(limited.getStats().expanded() <= 10);
+
+        try
+        {
+            limitedPathFinder.setMaxExpansions(0);
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+        }
+    }
+
+    public void testFindPath_StraightLine()
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+
+        // In open air, the straight line is returned without searching.
+        final IPathFinder.Result open = new PathFinder().findRoute(startPos, endPos);
+        assertTrue(open.getOk());
+        assertEquals(0, open.getStats().expanded());
+        assertTrue(new LngLatHandler().isCloseTo(open.getRoute().get(open.getRoute().size() - 2).position(), endPos));
+        for (INode.Direction direction : open.getRoute().subList(1, open.getRoute().size() - 1))
+            assertTrue(Math.abs(direction.angle() - open.getRoute().get(1).angle()) <= LngLatHandler.ANGLE_MULTIPLE);
+
+        // Across the zone, the route is searched for; it cannot be shorter than the straight line.
+        final PathFinder zonedPathFinder = new PathFinder();
+        zonedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        final IPathFinder.Result around = zonedPathFinder.findRoute(startPos, endPos);
+        assertTrue(around.getOk());
+        assertTrue(around.getStats().expanded() > 0);
+        assertTrue(around.getRoute().size() > open.getRoute().size());
+    }
+
+    public void testFindPath_SegmentCheck()
+    {
+        // A wall thinner than a move, lying between two positions of the straight line.
+        final NamedRegion wall = rectangle("Wall", -3.18897, 55.9440, -3.18892, 55.9450);
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912, 55.9445);
+
+        final PathFinder pointPathFinder = new PathFinder();
+        pointPathFinder.setNoFlyZones(new NamedRegion[]{wall});
+        final IPathFinder.Result hopped = pointPathFinder.findRoute(startPos, endPos);
+        assertTrue(hopped.getOk());
+        assertTrue(clipsZone(hopped.getRoute(), wall)); // (every position lies outside the wall)
+
+        final PathFinder segmentPathFinder = new PathFinder();
+        segmentPathFinder.setNoFlyZones(new NamedRegion[]{wall});
+        segmentPathFinder.setSegmentCheck(true);
+        final IPathFinder.Result around = segmentPathFinder.findRoute(startPos, endPos);
+        assertTrue(around.getOk());
+        assertFalse(clipsZone(around.getRoute(), wall));
+        assertTrue(around.getRoute().size() > hopped.getRoute().size());
+
+        // Every mode of the search applies the check.
+        segmentPathFinder.setBidirectional(true);
+        assertFalse(clipsZone(segmentPathFinder.findRoute(startPos, endPos).getRoute(), wall));
+        assertFalse(clipsZone(segmentPathFinder.findRoute(startPos, endPos, Duration.ofSeconds(10)).getRoute(), wall));
+
+        // ... as does every other path finder (and its fallback), including reversed cached routes.
+        final PathFinder fallback = new PathFinder();
+        final IPathFinder[] pathFinders = {
+                new JumpPointPathFinder(fallback),
+                new VisibilityGraphPathFinder(fallback),
+                new DistanceFieldPathFinder(startPos, 64, fallback),
+                new HierarchicalPathFinder(fallback),
+                new CachingPathFinder(new PathFinder()),
+        };
+        for (IPathFinder candidate : pathFinders)
+        {
+            candidate.setNoFlyZones(new NamedRegion[]{wall});
+            candidate.setSegmentCheck(true);
+            assertTrue(candidate.getSegmentCheck());
+            assertFalse(clipsZone(candidate.findRoute(startPos, endPos).getRoute(), wall));
+            assertFalse(clipsZone(candidate.findRoute(endPos, startPos).getRoute(), wall));
+        }
+        assertTrue(fallback.getSegmentCheck());
+    }
+
+    /**
+     * @return true if any move of the route passes through the zone (sampled every 10⁻⁶ degrees), false otherwise.
+     */
+    private static boolean clipsZone(List<INode.Direction> route, NamedRegion zone)
+    {
+        final LngLatHandler handler = new LngLatHandler();
+        for (int i = 1; i < route.size() - 1; i++)
+        {
+            final LngLat from = route.get(i - 1).position();
+            final LngLat to = route.get(i).position();
+            for (int step = 0; step <= 150; step++)
+            {
+                final double t = step / 150d;
+                final LngLat sample = new LngLat(from.lng() + t * (to.lng() - from.lng()),
+                        from.lat() + t * (to.lat() - from.lat()));
+                if (handler.isInRegion(sample, zone)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static NamedRegion rectangle(String name, double minLng, double minLat, double maxLng, double maxLat)
+    {
+        return new NamedRegion(name, new LngLat[]{
+                new LngLat(minLng, minLat),
+                new LngLat(maxLng, minLat),
+                new LngLat(maxLng, maxLat),
+                new LngLat(minLng, maxLat),
+        });
+    }
+
+    public void testCompactRoute()
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final IPathFinder.Result result = pathFinder.findRoute(startPos, endPos);
+        final List<INode.Direction> route = result.getRoute();
+
+        final CompactRoute compactRoute = CompactRoute.of(route);
+        assertNotNull(compactRoute);
+        assertEquals(route.size(), compactRoute.size());
+        assertEquals(route.size() - 2, compactRoute.moves());
+
+        // The directions are expanded identically.
+        int i = 0;
+        for (INode.Direction direction : compactRoute)
+        {
+            assertEquals(route.get(i), direction);
+            i++;
+        }
+        assertEquals(route.get(1).position(), compactRoute.get(1).position());
+        assertEquals(Lattice.bearingOf(route.get(1).angle()), compactRoute.bearingAt(0));
+
+        assertEquals(route, compactRoute);
+        result.compact();
+        assertSame(compactRoute.getClass(), result.getRoute().getClass());
+        assertEquals(route, result.getRoute());
+        assertSame(compactRoute, CompactRoute.of(compactRoute));
+
+        // Routes off the lattice of their starting position are left as they are.
+        final List<INode.Direction> shifted = new ArrayList<>(route);
+        shifted.set(1, new INode.Direction(new LngLat(0, 0), route.get(1).angle(), 1));
+        assertNull(CompactRoute.of(shifted));
+        assertNull(CompactRoute.of(route.subList(0, 1)));
+
+        try
+        {
+            CompactRoute.of(startPos, endPos, new byte[]{0, (byte) Lattice.BEARINGS});
+            fail("expected 'IllegalArgumentException' to be thrown");
+        } catch (IllegalArgumentException e)
+        {
+            // Caught as expected.
+        }
+    }
+
+    public void testFindPath_Anytime()
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final PathFinder anytimePathFinder = new PathFinder();
+        anytimePathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        final int shortest = anytimePathFinder.findRoute(startPos, endPos).getRoute().size();
+
+        // Without a budget, the search ends with the shortest route.
+        final IPathFinder.Result unbounded = anytimePathFinder.findRoute(startPos, endPos, (Duration) null);
+        assertTrue(unbounded.getOk());
+        assertEquals(1.0, unbounded.getSuboptimalityBound(), 0);
+        assertEquals(shortest, unbounded.getRoute().size());
+
+        // Once the budget runs out, the first route found is returned along with the bound it meets.
+        final IPathFinder.Result bounded = anytimePathFinder.findRoute(startPos, endPos, Duration.ofNanos(1));
+        final var route = bounded.getRoute();
+        assertTrue(bounded.getOk());
+        assertTrue(bounded.getSuboptimalityBound() >= 1 && bounded.getSuboptimalityBound() <= 3);
+        assertTrue(new LngLatHandler().isCloseTo(route.get(route.size() - 2).position(), endPos));
+        assertTrue(route.size() - 2 <= bounded.getSuboptimalityBound() * (shortest - 2) + 1e-9);
+    }
+
+    public void testFindPath_Concurrent() throws Exception
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final PathFinder sharedPathFinder = new PathFinder();
+        sharedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+        final int shortest = sharedPathFinder.findRoute(startPos, endPos).getRoute().size();
+
+        // Concurrent searches on one instance must each find the shortest route, while the zones are being replaced
+        // (with identical ones) under them.
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            final List<Future<IPathFinder.Result>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++)
+            {
+                futures.add(executor.submit(() -> sharedPathFinder.findRoute(startPos, endPos)));
+                if (i % 8 == 0) sharedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+            }
+            for (Future<IPathFinder.Result> future : futures)
+            {
+                assertTrue(future.get().getOk());
+                assertEquals(shortest, future.get().getRoute().size());
+            }
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Asserts that the given path finder finds a valid route around {@link #ZONE}, within a few moves of the shortest
+     * and within its reported suboptimality bound.
+     *
+     * @return the result of the search.
+     */
+    private static IPathFinder.Result assertNearShortestRoute(IPathFinder candidate)
+    {
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final LngLatHandler handler = new LngLatHandler();
+
+        final IPathFinder reference = new PathFinder();
+        reference.setNoFlyZones(new NamedRegion[]{ZONE});
+        candidate.setNoFlyZones(new NamedRegion[]{ZONE});
+
+        final IPathFinder.Result result = candidate.findRoute(startPos, endPos);
+        assertTrue(result.getOk());
+
+        final var route = result.getRoute();
+        assertEquals(startPos, route.get(0).position());
+        assertEquals(endPos, route.get(route.size() - 1).position());
+        assertEquals(999.0, route.get(route.size() - 1).angle(), 0);
+        assertTrue(handler.isCloseTo(route.get(route.size() - 2).position(), endPos));
+        for (int i = 1; i < route.size() - 1; i++)
+        {
+            assertFalse(handler.isInRegion(route.get(i).position(), ZONE));
+            assertEquals(0, route.get(i).angle() % LngLatHandler.ANGLE_MULTIPLE, 0);
+            assertEquals(SystemConstants.DRONE_MOVE_DISTANCE,
+                    handler.distanceTo(route.get(i - 1).position(), route.get(i).position()), 1e-9);
+        }
+
+        final int shortest = reference.findRoute(startPos, endPos).getRoute().size();
+        assertTrue(route.size() >= shortest && route.size() <= shortest + 3);
+        assertTrue(route.size() - 2 <= result.getSuboptimalityBound() * (shortest - 2) + 1e-9);
+        return result;
+    }
+
+    /**
+     * Represents a fallback path finder which must not be reached.
+     */
+    private static class FailingPathFinder implements IPathFinder
+    {
+        public Result findRoute(LngLat from, LngLat to)
+        {
+            fail("expected the route to be found without falling back");
+            return null;
+        }
+
+        public void setNoFlyZones(NamedRegion[] noFlyZones)
+        {
+        }
+
+        public void setCentralArea(NamedRegion centralArea)
+        {
+        }
+
+        public void setSegmentCheck(boolean enabled)
+        {
+        }
+
+        public boolean getSegmentCheck()
+        {
+            return false;
+        }
+    }
+
+    public void testLattice_MoveOrder()
+    {
+        final Lattice lattice = new Lattice(new LngLat(-3.1869, 55.9445));
+
+        // The same moves applied in a different order must resolve to the same key.
+        final long a = Lattice.neighbour(Lattice.neighbour(Lattice.ORIGIN, 1), 6);
+        final long b = Lattice.neighbour(Lattice.neighbour(Lattice.ORIGIN, 6), 1);
+        assertEquals(a, b);
+
+        // Moving back and forth along opposing bearings returns to the origin.
+        assertEquals(Lattice.ORIGIN, Lattice.neighbour(Lattice.neighbour(Lattice.ORIGIN, 3), 11));
+
+        // Keys convert back to positions (and vice-versa) without loss.
+        assertEquals(a, lattice.keyOf(lattice.toLngLat(a)));
+        assertEquals(lattice.getOrigin(), lattice.toLngLat(Lattice.ORIGIN));
+
+        // A single move covers the drone's move distance.
+        final LngLat next = lattice.toLngLat(Lattice.neighbour(Lattice.ORIGIN, 5));
+        assertEquals(SystemConstants.DRONE_MOVE_DISTANCE, new LngLatHandler().distanceTo(lattice.getOrigin(), next), 1e-9);
+    }
+
+    public void testLattice_NoKey()
+    {
+        final long edge = Lattice.pack(Lattice.MAX_OFFSET, 0);
+        assertEquals(Lattice.NO_KEY, Lattice.neighbour(edge, 0));
+        assertTrue(Lattice.neighbour(edge, 8) != Lattice.NO_KEY);
+    }
+
+    public void testIndexedMinHeap()
+    {
+        final IndexedMinHeap heap = new IndexedMinHeap(2);
+        heap.push(0, 5);
+        heap.push(1, 3);
+        heap.push(2, 4);
+
+        // Pushing a queued id updates its priority rather than adding a second entry.
+        heap.push(0, 1);
+        assertEquals(3, heap.size());
+        assertEquals(1.0, heap.priorityOf(0), 0);
+
+        assertEquals(0, heap.poll());
+        assertTrue(heap.isClosed(0));
+        assertFalse(heap.contains(0));
+
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertTrue(heap.isEmpty());
+
+        // Clearing the heap resets every closed flag.
+        heap.clear();
+        assertFalse(heap.isClosed(0));
+    }
+
+    public void testIndexedMinHeap_IllegalStateException()
+    {
+        try
+        {
+            new IndexedMinHeap().poll();
+            fail("expected 'IllegalStateException' to be thrown");
+        } catch (IllegalStateException e)
+        {
+            // Caught as expected.
+            assertTrue(e.getMessage().contains("empty"));
+        }
+    }
+
+    public void testNodeStore()
+    {
+        final NodeStore store = new NodeStore(2);
+
+        // Insert enough (distinct) keys to force the store to grow several times.
+        long key = Lattice.ORIGIN;
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(NodeStore.NOT_FOUND, store.find(key));
+            final int id = store.add(key);
+            assertEquals(i, id);
+            assertEquals(Double.POSITIVE_INFINITY, store.getRouteScore(id), 0);
+
+            store.setParent(id, i - 1, i % 4);
+            key = Lattice.neighbour(key, i % 4);
+        }
+        assertEquals(1000, store.size());
+
+        // Every key resolves to the id it was assigned.
+        key = Lattice.ORIGIN;
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(i, store.find(key));
+            key = Lattice.neighbour(key, i % 4);
+        }
+        assertEquals(999, store.depthOf(999));
+        assertEquals(3, store.getBearing(999) + 0);
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(NodeStore.NOT_FOUND, store.find(Lattice.ORIGIN));
+
+        // A few keys in the grown table are emptied one by one; none of them remains.
+        key = Lattice.ORIGIN;
+        for (int i = 0; i < 10; i++)
+        {
+            store.add(key);
+            key = Lattice.neighbour(key, i % 4);
+        }
+        store.clear();
+        key = Lattice.ORIGIN;
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals(NodeStore.NOT_FOUND, store.find(key));
+            key = Lattice.neighbour(key, i % 4);
+        }
+    }
+
+    public void testFindPath_ReusedArena() throws Exception
+    {
+        final PathFinder zonedPathFinder = new PathFinder();
+        zonedPathFinder.setNoFlyZones(new NamedRegion[]{ZONE});
+
+        final LngLat startPos = new LngLat(-3.1869, 55.9445);
+        final LngLat endPos = new LngLat(-3.1912869215011597, 55.945535152517735);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            // (i) A new thread searches with a fresh arena.
+            final var route = executor.submit(() -> zonedPathFinder.findRoute(startPos, endPos).getRoute()).get();
+
+            // Searches on this thread reuse its arena, and are unaffected by the searches before them.
+            zonedPathFinder.findRoute(endPos, startPos);
+            zonedPathFinder.findRoute(startPos, new LngLat(-3.1868, 55.9445));
+            zonedPathFinder.findRoute(startPos, endPos, Duration.ofSeconds(10));
+            assertEquals(route, zonedPathFinder.findRoute(startPos, endPos).getRoute());
+            assertEquals(route, zonedPathFinder.findRoute(startPos, endPos).getRoute());
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
 }
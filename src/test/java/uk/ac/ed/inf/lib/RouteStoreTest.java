@@ -0,0 +1,153 @@
+package uk.ac.ed.inf.lib;
+
+import junit.framework.TestCase;
+import uk.ac.ed.inf.ilp.data.LngLat;
+import uk.ac.ed.inf.ilp.data.NamedRegion;
+import uk.ac.ed.inf.lib.pathFinder.CachingPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.INode;
+import uk.ac.ed.inf.lib.pathFinder.IPathFinder;
+import uk.ac.ed.inf.lib.pathFinder.PathFinder;
+import uk.ac.ed.inf.lib.routeStore.IRouteStore;
+import uk.ac.ed.inf.lib.routeStore.RouteStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class RouteStoreTest extends TestCase
+{
+    private static final LngLat START_POS = new LngLat(-3.1869, 55.9445);
+    private static final LngLat END_POS = new LngLat(-3.1912869215011597, 55.945535152517735);
+    private static final long FINGERPRINT = 42;
+
+    private Path directory;
+
+    @Override
+    protected void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("routes");
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    public void testRouteStore()
+    {
+        final IRouteStore store = new RouteStore(directory);
+        final List<INode.Direction> route = new PathFinder().findRoute(START_POS, END_POS).getRoute();
+
+        assertNull(store.load(START_POS, END_POS, FINGERPRINT));
+        store.save(START_POS, END_POS, FINGERPRINT, route);
+
+        // The loaded route must consist of the same moves as the stored one, and only be served for the same key.
+        final List<INode.Direction> loaded = new RouteStore(directory).load(START_POS, END_POS, FINGERPRINT);
+        assertEquals(route.size(), loaded.size());
+        for (int i = 0; i < route.size(); i++)
+        {
+            assertEquals(route.get(i).position(), loaded.get(i).position());
+            assertEquals(route.get(i).angle(), loaded.get(i).angle(), 0);
+        }
+        assertNull(store.load(START_POS, END_POS, FINGERPRINT + 1));
+        assertNull(store.load(END_POS, START_POS, FINGERPRINT));
+    }
+
+    public void testRouteStore_Corrupted() throws IOException
+    {
+        final IRouteStore store = new RouteStore(directory);
+        store.save(START_POS, END_POS, FINGERPRINT, new PathFinder().findRoute(START_POS, END_POS).getRoute());
+
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : files.toList()) Files.write(file, new byte[]{1, 2, 3});
+        }
+        assertNull(store.load(START_POS, END_POS, FINGERPRINT));
+    }
+
+    public void testRouteStore_IllegalArgumentException()
+    {
+        final IRouteStore store = new RouteStore(directory);
+        final List<INode.Direction> route = new PathFinder().findRoute(START_POS, END_POS).getRoute();
+        final LngLat[][] cases = new LngLat[][]{
+                {null, END_POS},
+                {END_POS, START_POS}, // (the route does not lead from → to)
+        };
+        for (LngLat[] c : cases)
+        {
+            try
+            {
+                store.save(c[0], c[1], FINGERPRINT, route);
+                fail("expected 'IllegalArgumentException' to be thrown");
+            } catch (IllegalArgumentException e)
+            {
+                // Caught as expected.
+                assertTrue(e.getMessage().contains("route") || e.getMessage().contains("positions"));
+            }
+        }
+    }
+
+    public void testCachingPathFinder_RouteStore()
+    {
+        final int[] calls = new int[1];
+        final PathFinder delegate = new PathFinder();
+        final IPathFinder counter = new IPathFinder()
+        {
+            public Result findRoute(LngLat from, LngLat to)
+            {
+                calls[0]++;
+                return delegate.findRoute(from, to);
+            }
+
+            public void setNoFlyZones(NamedRegion[] noFlyZones)
+            {
+                delegate.setNoFlyZones(noFlyZones);
+            }
+
+            public void setCentralArea(NamedRegion centralArea)
+            {
+                delegate.setCentralArea(centralArea);
+            }
+
+            public void setSegmentCheck(boolean enabled)
+            {
+                delegate.setSegmentCheck(enabled);
+            }
+
+            public boolean getSegmentCheck()
+            {
+                return delegate.getSegmentCheck();
+            }
+
+            public long getConfigurationFingerprint()
+            {
+                return delegate.getConfigurationFingerprint();
+            }
+        };
+
+        // A second "run" is served from the store rather than searched for again.
+        for (int run = 0; run < 2; run++)
+        {
+            final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+            pathFinder.setRouteStore(new RouteStore(directory));
+            pathFinder.setNoFlyZones(new NamedRegion[0]);
+            assertTrue(pathFinder.findRoute(START_POS, END_POS).getOk());
+        }
+        assertEquals(1, calls[0]);
+
+        // Routes stored by one configuration of the delegate are not served to another.
+        delegate.setSegmentCheck(true);
+        final CachingPathFinder pathFinder = new CachingPathFinder(counter);
+        pathFinder.setRouteStore(new RouteStore(directory));
+        pathFinder.setNoFlyZones(new NamedRegion[0]);
+        assertTrue(pathFinder.findRoute(START_POS, END_POS).getOk());
+        assertEquals(2, calls[0]);
+    }
+}